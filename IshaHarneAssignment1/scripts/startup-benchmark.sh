@@ -0,0 +1,43 @@
+#!/usr/bin/env bash
+# Measures cold-start wall time of the payroll CLI with and without the AppCDS archive.
+#
+# Usage: scripts/startup-benchmark.sh [runs] [employees.csv]
+# Build first with: mvn -Pappcds package
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+RUNS="${1:-20}"
+INPUT="${2:-sample_employees.csv}"
+JAR="target/payroll.jar"
+ARCHIVE="target/payroll.jsa"
+
+if [[ ! -f "$JAR" || ! -f "$ARCHIVE" ]]; then
+    echo "Missing $JAR or $ARCHIVE - run 'mvn -Pappcds package' first." >&2
+    exit 1
+fi
+
+# Runs the CLI RUNS times with the given JVM flags and prints the mean wall time in ms
+measure() {
+    local total=0
+    for ((i = 0; i < RUNS; i++)); do
+        local start end
+        start=$(date +%s%N)
+        java "$@" -jar "$JAR" "$INPUT" > /dev/null
+        end=$(date +%s%N)
+        total=$((total + (end - start) / 1000000))
+    done
+    echo $((total / RUNS))
+}
+
+# Warm the OS page cache so the first measured run is not an outlier
+java -jar "$JAR" "$INPUT" > /dev/null
+
+DEFAULT_MS=$(measure -Xshare:auto)
+NO_CDS_MS=$(measure -Xshare:off)
+APPCDS_MS=$(measure -XX:SharedArchiveFile="$ARCHIVE")
+
+echo "Startup benchmark: $RUNS runs over $INPUT"
+printf "  %-28s %6d ms\n" "No CDS (-Xshare:off)" "$NO_CDS_MS"
+printf "  %-28s %6d ms\n" "JDK default CDS archive" "$DEFAULT_MS"
+printf "  %-28s %6d ms\n" "AppCDS (payroll.jsa)" "$APPCDS_MS"
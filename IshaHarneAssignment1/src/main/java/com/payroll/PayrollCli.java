@@ -0,0 +1,127 @@
+package com.payroll;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command-line entry point for ad-hoc payroll runs.
+ * Reads employees from a CSV file and writes one pay slip per employee.
+ *
+ * Usage: java -jar payroll.jar <employees.csv> [output-file]
+ *
+ * Each non-blank line that does not start with '#' has the form:
+ * id,name,type,payRate,unionMember,retirement[,hoursOrDays]
+ * When hoursOrDays is omitted the monthly defaults are used
+ * (0 for FULL_TIME, 120 hours for PART_TIME, 22 days for CONTRACTOR).
+ */
+public class PayrollCli {
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: java -jar payroll.jar <employees.csv> [output-file]");
+            System.exit(2);
+        }
+
+        Path input = Paths.get(args[0]);
+        try {
+            List<Employee> employees = new ArrayList<>();
+            List<Double> hoursOrDays = new ArrayList<>();
+            readEmployees(input, employees, hoursOrDays);
+
+            PayrollProcessor processor = new PayrollProcessor();
+            if (args.length == 2) {
+                try (Writer out = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+                    writePaySlips(processor, employees, hoursOrDays, out);
+                }
+            } else {
+                Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+                writePaySlips(processor, employees, hoursOrDays, out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error in " + input + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parses the employee file, collecting each employee and the hours or days worked.
+     */
+    static void readEmployees(Path input, List<Employee> employees, List<Double> hoursOrDays)
+            throws IOException {
+        PayrollProcessor processor = new PayrollProcessor();
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = trimmed.split(",", -1);
+                if (fields.length != 6 && fields.length != 7) {
+                    throw new IllegalArgumentException("line " + lineNumber
+                            + ": expected 6 or 7 fields but found " + fields.length);
+                }
+
+                try {
+                    EmployeeType type = EmployeeType.valueOf(fields[2].trim());
+                    Employee employee = new Employee(fields[0].trim(), fields[1].trim(), type,
+                            Double.parseDouble(fields[3].trim()),
+                            parseBoolean(fields[4]), parseBoolean(fields[5]));
+                    employees.add(employee);
+                    hoursOrDays.add(fields.length == 7
+                            ? Double.parseDouble(fields[6].trim())
+                            : processor.getDefaultHoursOrDays(type));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private static boolean parseBoolean(String field) {
+        String value = field.trim();
+        if (value.equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+        throw new IllegalArgumentException("expected true or false but found '" + value + "'");
+    }
+
+    /**
+     * Generates and writes a pay slip for every employee, followed by the run totals.
+     */
+    static void writePaySlips(PayrollProcessor processor, List<Employee> employees,
+                              List<Double> hoursOrDays, Writer out) throws IOException {
+        double totalGross = 0;
+        double totalNet = 0;
+
+        for (int i = 0; i < employees.size(); i++) {
+            PaySlip slip = processor.generatePaySlip(employees.get(i), hoursOrDays.get(i));
+            totalGross += slip.getGrossPay();
+            totalNet += slip.getNetPay();
+            out.write(slip.toString());
+            out.write('\n');
+        }
+
+        out.write(String.format("Employees: %d  Total Gross: $%,.2f  Total Net: $%,.2f%n",
+                employees.size(), totalGross, totalNet));
+    }
+}
@@ -187,7 +187,7 @@ public class PayrollProcessor {
      * PART_TIME: 120 (max hours)
      * CONTRACTOR: 22 (typical work days in a month)
      */
-    private double getDefaultHoursOrDays(EmployeeType type) {
+    double getDefaultHoursOrDays(EmployeeType type) {
         switch (type) {
             case FULL_TIME:
                 return 0;
@@ -0,0 +1,384 @@
+package com.payroll;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Reconciles two payroll runs (e.g. last month against this month) by employee ID.
+ * Each run is externally sorted by ID: slips are buffered up to a fixed limit,
+ * sorted, and spilled to temporary files once the limit is exceeded. The sorted
+ * runs are then merge-joined in a single pass, so memory use is bounded by the
+ * limit no matter how many slips are reconciled.
+ */
+public class PayrollReconciler {
+
+    // Default number of slips held in memory per run before spilling to disk
+    private static final int DEFAULT_MAX_IN_MEMORY_RECORDS = 100_000;
+
+    private static final String GROSS_PAY = "Gross Pay";
+    private static final String TAX = "Tax";
+    private static final String TOTAL_DEDUCTIONS = "Total Deductions";
+    private static final String NET_PAY = "Net Pay";
+
+    private static final Comparator<SlipRecord> BY_ID = Comparator.comparing(r -> r.id);
+
+    private final double threshold;
+    private final int maxInMemoryRecords;
+    private final Path tempDirectory;
+
+    /**
+     * Creates a reconciler that reports field changes larger than the threshold.
+     *
+     * @param threshold the minimum absolute change (in dollars) that is reported
+     */
+    public PayrollReconciler(double threshold) {
+        this(threshold, DEFAULT_MAX_IN_MEMORY_RECORDS, null);
+    }
+
+    /**
+     * Creates a reconciler with an explicit memory limit and spill directory.
+     *
+     * @param threshold          the minimum absolute change (in dollars) that is reported
+     * @param maxInMemoryRecords slips buffered per run before sorted chunks are spilled to disk
+     * @param tempDirectory      directory for spill files, or null for the system default
+     */
+    public PayrollReconciler(double threshold, int maxInMemoryRecords, Path tempDirectory) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Threshold must not be negative: " + threshold);
+        }
+        if (maxInMemoryRecords < 1) {
+            throw new IllegalArgumentException("In-memory record limit must be positive: " + maxInMemoryRecords);
+        }
+        this.threshold = threshold;
+        this.maxInMemoryRecords = maxInMemoryRecords;
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Reconciles two lists of pay slips.
+     *
+     * @param previousRun slips from the earlier run
+     * @param currentRun  slips from the run being checked
+     * @return the added/removed employees and per-field changes above the threshold
+     */
+    public ReconciliationReport reconcile(List<PaySlip> previousRun, List<PaySlip> currentRun) throws IOException {
+        return reconcile(previousRun.iterator(), currentRun.iterator());
+    }
+
+    /**
+     * Reconciles two streams of pay slips. Neither stream needs to be sorted and
+     * neither is held fully in memory.
+     *
+     * @param previousRun slips from the earlier run
+     * @param currentRun  slips from the run being checked
+     * @return the added/removed employees and per-field changes above the threshold
+     */
+    public ReconciliationReport reconcile(Iterator<PaySlip> previousRun, Iterator<PaySlip> currentRun)
+            throws IOException {
+        ReconciliationReport report = new ReconciliationReport(threshold);
+
+        try (SortedRun previous = sort(previousRun); SortedRun current = sort(currentRun)) {
+            SlipRecord prev = previous.next();
+            SlipRecord curr = current.next();
+
+            while (prev != null || curr != null) {
+                int order;
+                if (prev == null) {
+                    order = 1;
+                } else if (curr == null) {
+                    order = -1;
+                } else {
+                    order = prev.id.compareTo(curr.id);
+                }
+
+                if (order < 0) {
+                    report.addRemoved(prev.id);
+                    prev = nextDistinct(previous, prev, "previous");
+                } else if (order > 0) {
+                    report.addAdded(curr.id);
+                    curr = nextDistinct(current, curr, "current");
+                } else {
+                    compareFields(prev, curr, report);
+                    report.incrementMatched();
+                    prev = nextDistinct(previous, prev, "previous");
+                    curr = nextDistinct(current, curr, "current");
+                }
+            }
+        }
+
+        return report;
+    }
+
+    /**
+     * Advances a sorted run, rejecting duplicate employee IDs within the same run.
+     */
+    private SlipRecord nextDistinct(SortedRun run, SlipRecord last, String runName) throws IOException {
+        SlipRecord next = run.next();
+        if (next != null && next.id.equals(last.id)) {
+            throw new IllegalArgumentException("Duplicate employee ID in " + runName + " run: " + last.id);
+        }
+        return next;
+    }
+
+    /**
+     * Records every field of a matched employee whose change exceeds the threshold.
+     */
+    private void compareFields(SlipRecord prev, SlipRecord curr, ReconciliationReport report) {
+        compareField(prev.id, GROSS_PAY, prev.grossPay, curr.grossPay, report);
+        compareField(prev.id, TAX, prev.taxAmount, curr.taxAmount, report);
+
+        // Itemized deductions, in the order they appear across both slips
+        Set<String> names = new LinkedHashSet<>(prev.deductions.keySet());
+        names.addAll(curr.deductions.keySet());
+        for (String name : names) {
+            compareField(prev.id, name,
+                    prev.deductions.getOrDefault(name, 0.0),
+                    curr.deductions.getOrDefault(name, 0.0), report);
+        }
+
+        compareField(prev.id, TOTAL_DEDUCTIONS, prev.totalDeductions(), curr.totalDeductions(), report);
+        compareField(prev.id, NET_PAY, prev.netPay, curr.netPay, report);
+    }
+
+    private void compareField(String employeeId, String field, double previous, double current,
+                              ReconciliationReport report) {
+        // Compare at cent precision so floating point noise is never reported
+        double delta = BigDecimal.valueOf(current - previous)
+                .setScale(2, RoundingMode.HALF_UP)
+                .abs()
+                .doubleValue();
+        if (delta > threshold) {
+            report.addDelta(new ReconciliationReport.FieldDelta(employeeId, field, previous, current));
+        }
+    }
+
+    /**
+     * Sorts a stream of slips by employee ID, spilling sorted chunks to disk
+     * whenever the in-memory limit is reached.
+     */
+    private SortedRun sort(Iterator<PaySlip> slips) throws IOException {
+        List<SlipRecord> buffer = new ArrayList<>();
+        List<Path> spills = new ArrayList<>();
+
+        try {
+            while (slips.hasNext()) {
+                buffer.add(SlipRecord.of(slips.next()));
+                if (buffer.size() >= maxInMemoryRecords) {
+                    spills.add(spill(buffer));
+                    buffer.clear();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteAll(spills);
+            throw e;
+        }
+
+        buffer.sort(BY_ID);
+        if (spills.isEmpty()) {
+            return new MemoryRun(buffer);
+        }
+        if (!buffer.isEmpty()) {
+            try {
+                spills.add(spill(buffer));
+            } catch (IOException e) {
+                deleteAll(spills);
+                throw e;
+            }
+        }
+        return new MergedRun(spills);
+    }
+
+    private Path spill(List<SlipRecord> buffer) throws IOException {
+        buffer.sort(BY_ID);
+        Path file = tempDirectory == null
+                ? Files.createTempFile("payroll-recon", ".run")
+                : Files.createTempFile(tempDirectory, "payroll-recon", ".run");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (SlipRecord record : buffer) {
+                record.writeTo(out);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+
+    private static void deleteAll(List<Path> files) throws IOException {
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * The fields of a pay slip needed for reconciliation, in a form that can be
+     * written to and read back from a spill file.
+     */
+    private static class SlipRecord {
+        private final String id;
+        private final double grossPay;
+        private final double taxAmount;
+        private final Map<String, Double> deductions;
+        private final double netPay;
+
+        private SlipRecord(String id, double grossPay, double taxAmount,
+                           Map<String, Double> deductions, double netPay) {
+            this.id = id;
+            this.grossPay = grossPay;
+            this.taxAmount = taxAmount;
+            this.deductions = deductions;
+            this.netPay = netPay;
+        }
+
+        static SlipRecord of(PaySlip slip) {
+            return new SlipRecord(slip.getEmployee().getId(), slip.getGrossPay(), slip.getTaxAmount(),
+                    new LinkedHashMap<>(slip.getDeductions()), slip.getNetPay());
+        }
+
+        double totalDeductions() {
+            return deductions.values().stream().mapToDouble(Double::doubleValue).sum();
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeUTF(id);
+            out.writeDouble(grossPay);
+            out.writeDouble(taxAmount);
+            out.writeDouble(netPay);
+            out.writeInt(deductions.size());
+            for (Map.Entry<String, Double> entry : deductions.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeDouble(entry.getValue());
+            }
+        }
+
+        /**
+         * Reads the next record, or returns null at the end of the file.
+         */
+        static SlipRecord readFrom(DataInputStream in) throws IOException {
+            String id;
+            try {
+                id = in.readUTF();
+            } catch (EOFException e) {
+                return null;
+            }
+            double grossPay = in.readDouble();
+            double taxAmount = in.readDouble();
+            double netPay = in.readDouble();
+            int deductionCount = in.readInt();
+            Map<String, Double> deductions = new LinkedHashMap<>();
+            for (int i = 0; i < deductionCount; i++) {
+                deductions.put(in.readUTF(), in.readDouble());
+            }
+            return new SlipRecord(id, grossPay, taxAmount, deductions, netPay);
+        }
+    }
+
+    /**
+     * A stream of slip records in ascending employee ID order.
+     */
+    private interface SortedRun extends Closeable {
+        /**
+         * Returns the next record, or null when the run is exhausted.
+         */
+        SlipRecord next() throws IOException;
+    }
+
+    /**
+     * A sorted run that fit entirely within the in-memory limit.
+     */
+    private static class MemoryRun implements SortedRun {
+        private final Iterator<SlipRecord> records;
+
+        MemoryRun(List<SlipRecord> records) {
+            this.records = records.iterator();
+        }
+
+        @Override
+        public SlipRecord next() {
+            return records.hasNext() ? records.next() : null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * A k-way merge over sorted spill files. Only the head record of each file
+     * is held in memory; the files are deleted when the run is closed.
+     */
+    private static class MergedRun implements SortedRun {
+        private final List<Path> files;
+        private final List<DataInputStream> inputs = new ArrayList<>();
+        private final PriorityQueue<Head> heads = new PriorityQueue<>(
+                Comparator.comparing((Head h) -> h.record.id));
+
+        MergedRun(List<Path> files) throws IOException {
+            this.files = files;
+            try {
+                for (Path file : files) {
+                    DataInputStream in = new DataInputStream(
+                            new BufferedInputStream(Files.newInputStream(file)));
+                    inputs.add(in);
+                    SlipRecord first = SlipRecord.readFrom(in);
+                    if (first != null) {
+                        heads.add(new Head(first, in));
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public SlipRecord next() throws IOException {
+            Head head = heads.poll();
+            if (head == null) {
+                return null;
+            }
+            SlipRecord following = SlipRecord.readFrom(head.input);
+            if (following != null) {
+                heads.add(new Head(following, head.input));
+            }
+            return head.record;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (DataInputStream in : inputs) {
+                in.close();
+            }
+            deleteAll(files);
+        }
+
+        private static class Head {
+            private final SlipRecord record;
+            private final DataInputStream input;
+
+            Head(SlipRecord record, DataInputStream input) {
+                this.record = record;
+                this.input = input;
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.payroll;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of reconciling two payroll runs.
+ * Lists employees added or removed between the runs and every per-field
+ * change whose magnitude exceeded the reconciliation threshold.
+ */
+public class ReconciliationReport {
+    private final double threshold;
+    private final List<String> addedEmployees = new ArrayList<>();
+    private final List<String> removedEmployees = new ArrayList<>();
+    private final List<FieldDelta> deltas = new ArrayList<>();
+    private int matchedCount;
+
+    ReconciliationReport(double threshold) {
+        this.threshold = threshold;
+    }
+
+    void addAdded(String employeeId) {
+        addedEmployees.add(employeeId);
+    }
+
+    void addRemoved(String employeeId) {
+        removedEmployees.add(employeeId);
+    }
+
+    void addDelta(FieldDelta delta) {
+        deltas.add(delta);
+    }
+
+    void incrementMatched() {
+        matchedCount++;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Gets the IDs of employees present only in the current run, in ID order.
+     */
+    public List<String> getAddedEmployees() {
+        return Collections.unmodifiableList(addedEmployees);
+    }
+
+    /**
+     * Gets the IDs of employees present only in the previous run, in ID order.
+     */
+    public List<String> getRemovedEmployees() {
+        return Collections.unmodifiableList(removedEmployees);
+    }
+
+    /**
+     * Gets the field changes above the threshold, ordered by employee ID.
+     */
+    public List<FieldDelta> getDeltas() {
+        return Collections.unmodifiableList(deltas);
+    }
+
+    /**
+     * Gets the number of employees present in both runs.
+     */
+    public int getMatchedCount() {
+        return matchedCount;
+    }
+
+    public boolean hasAnomalies() {
+        return !addedEmployees.isEmpty() || !removedEmployees.isEmpty() || !deltas.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=====================================\n");
+        sb.append("      PAYROLL RECONCILIATION\n");
+        sb.append("=====================================\n");
+        sb.append(String.format("Matched Employees: %d\n", matchedCount));
+        sb.append(String.format("Threshold:         $%,.2f\n", threshold));
+        sb.append("-------------------------------------\n");
+        sb.append(String.format("Added (%d):\n", addedEmployees.size()));
+        for (String id : addedEmployees) {
+            sb.append("  + ").append(id).append("\n");
+        }
+        sb.append(String.format("Removed (%d):\n", removedEmployees.size()));
+        for (String id : removedEmployees) {
+            sb.append("  - ").append(id).append("\n");
+        }
+        sb.append("-------------------------------------\n");
+        sb.append(String.format("Changes (%d):\n", deltas.size()));
+        for (FieldDelta delta : deltas) {
+            sb.append("  ").append(delta).append("\n");
+        }
+        sb.append("=====================================\n");
+        return sb.toString();
+    }
+
+    /**
+     * A single field whose value changed between the previous and current run.
+     */
+    public static class FieldDelta {
+        private final String employeeId;
+        private final String field;
+        private final double previousValue;
+        private final double currentValue;
+
+        public FieldDelta(String employeeId, String field, double previousValue, double currentValue) {
+            this.employeeId = employeeId;
+            this.field = field;
+            this.previousValue = previousValue;
+            this.currentValue = currentValue;
+        }
+
+        public String getEmployeeId() {
+            return employeeId;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public double getPreviousValue() {
+            return previousValue;
+        }
+
+        public double getCurrentValue() {
+            return currentValue;
+        }
+
+        public double getDelta() {
+            return currentValue - previousValue;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-8s %-18s $%,10.2f -> $%,10.2f (%+,.2f)",
+                    employeeId, field + ":", previousValue, currentValue, getDelta());
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package com.payroll;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Differential test harness for alternative payroll execution paths.
+ * Generates random employees and hours, runs every registered path against the
+ * reference {@link PayrollProcessor#generatePaySlip}, and fails on any cent-level
+ * divergence. A failing case is shrunk to a minimal employee/hours pair.
+ * Paths that always use the monthly default hours or days, such as
+ * {@link PayrollProcessor#processMonthlyPayroll}, are checked on those defaults.
+ *
+ * Usage: java -cp out com.payroll.PayrollDifferentialHarness [cases] [seed]
+ */
+public class PayrollDifferentialHarness {
+
+    private static final int DEFAULT_CASES = 1_000_000;
+    private static final int BATCH_SIZE = 10_000;
+
+    /**
+     * An execution path that computes pay slips for a batch of employees.
+     * Must return one slip per employee, in the same order.
+     */
+    public interface PayrollPath {
+        List<PaySlip> run(List<Employee> employees, double[] hoursOrDays);
+    }
+
+    /**
+     * A single employee and the hours or days worked.
+     */
+    public static class Case {
+        private final Employee employee;
+        private final double hoursOrDays;
+
+        public Case(Employee employee, double hoursOrDays) {
+            this.employee = employee;
+            this.hoursOrDays = hoursOrDays;
+        }
+
+        public Employee getEmployee() {
+            return employee;
+        }
+
+        public double getHoursOrDays() {
+            return hoursOrDays;
+        }
+
+        @Override
+        public String toString() {
+            return employee + " with hoursOrDays=" + hoursOrDays;
+        }
+    }
+
+    /**
+     * Describes the first divergence found between a path and the reference.
+     * When a path returns the wrong number of slips, the original case is the
+     * first employee of the batch.
+     */
+    public static class Divergence {
+        private final String pathName;
+        private final Case original;
+        private final Case shrunk;
+        private final String detail;
+
+        Divergence(String pathName, Case original, Case shrunk, String detail) {
+            this.pathName = pathName;
+            this.original = original;
+            this.shrunk = shrunk;
+            this.detail = detail;
+        }
+
+        public String getPathName() {
+            return pathName;
+        }
+
+        public Case getOriginal() {
+            return original;
+        }
+
+        public Case getShrunk() {
+            return shrunk;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+
+        @Override
+        public String toString() {
+            return "Path '" + pathName + "' diverged from reference\n"
+                    + "  original: " + original + "\n"
+                    + "  shrunk:   " + shrunk + "\n"
+                    + "  " + detail;
+        }
+    }
+
+    private final PayrollProcessor reference = new PayrollProcessor();
+    private final Map<String, PayrollPath> paths = new LinkedHashMap<>();
+    private final Set<String> defaultHoursPaths = new HashSet<>();
+    private final Random random;
+
+    public PayrollDifferentialHarness(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Registers an alternative execution path to check against the reference.
+     */
+    public void addPath(String name, PayrollPath path) {
+        paths.put(name, path);
+    }
+
+    /**
+     * Registers a path that ignores the hours or days it is given and uses the
+     * monthly defaults instead. It is run, and compared, with those defaults.
+     */
+    public void addDefaultHoursPath(String name, PayrollPath path) {
+        paths.put(name, path);
+        defaultHoursPaths.add(name);
+    }
+
+    /**
+     * Registers the execution paths that currently exist in the payroll code:
+     * the batch monthly payroll and the CLI's CSV parsing and slip writing.
+     */
+    public void addBuiltInPaths() {
+        addDefaultHoursPath("processMonthlyPayroll",
+                (employees, hoursOrDays) -> new PayrollProcessor().processMonthlyPayroll(employees));
+        addPath("cli-csv", (employees, hoursOrDays) -> runCli(employees, hoursOrDays, true));
+        addDefaultHoursPath("cli-csv-default-hours",
+                (employees, hoursOrDays) -> runCli(employees, hoursOrDays, false));
+    }
+
+    /**
+     * Writes the employees to a CSV file, with or without the hours column, and
+     * runs it through PayrollCli: the file is parsed by readEmployees and the
+     * slips are printed by writePaySlips. Returns the slips behind the printed
+     * lines, after checking that every printed line and the totals match them.
+     */
+    private static List<PaySlip> runCli(List<Employee> employees, double[] hoursOrDays, boolean withHours) {
+        try {
+            Path csv = Files.createTempFile("payroll-harness", ".csv");
+            try {
+                try (BufferedWriter out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+                    out.write("# id,name,type,payRate,unionMember,retirement,hoursOrDays\n");
+                    for (int i = 0; i < employees.size(); i++) {
+                        Employee e = employees.get(i);
+                        out.write(e.getId() + "," + e.getName() + "," + e.getEmployeeType() + ","
+                                + e.getPayRate() + "," + e.isUnionMember() + "," + e.hasRetirement()
+                                + (withHours ? "," + hoursOrDays[i] : "") + "\n");
+                    }
+                }
+                List<Employee> parsed = new ArrayList<>();
+                List<Double> parsedHours = new ArrayList<>();
+                PayrollCli.readEmployees(csv, parsed, parsedHours);
+
+                PayrollProcessor processor = new PayrollProcessor();
+                StringWriter printed = new StringWriter();
+                PayrollCli.writePaySlips(processor, parsed, parsedHours, printed);
+                List<PaySlip> slips = new ArrayList<>();
+                StringBuilder expected = new StringBuilder();
+                double totalGross = 0;
+                double totalNet = 0;
+                for (int i = 0; i < parsed.size(); i++) {
+                    PaySlip slip = processor.generatePaySlip(parsed.get(i), parsedHours.get(i));
+                    slips.add(slip);
+                    expected.append(slip).append('\n');
+                    totalGross += slip.getGrossPay();
+                    totalNet += slip.getNetPay();
+                }
+                expected.append(String.format("Employees: %d  Total Gross: $%,.2f  Total Net: $%,.2f%n",
+                        parsed.size(), totalGross, totalNet));
+                if (!expected.toString().equals(printed.toString())) {
+                    throw new IllegalStateException("PayrollCli printed different slips than it parsed");
+                }
+                return slips;
+            } finally {
+                Files.delete(csv);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Runs the given number of random cases through every registered path.
+     *
+     * @param caseCount the number of random employee/hours cases to generate
+     * @return the first divergence found, or null if every path agrees with the reference
+     */
+    public Divergence run(int caseCount) {
+        int remaining = caseCount;
+        while (remaining > 0) {
+            int batchSize = Math.min(BATCH_SIZE, remaining);
+            List<Employee> employees = new ArrayList<>(batchSize);
+            double[] hoursOrDays = new double[batchSize];
+            for (int i = 0; i < batchSize; i++) {
+                Employee employee = randomEmployee(caseCount - remaining + i);
+                employees.add(employee);
+                hoursOrDays[i] = randomHoursOrDays(employee.getEmployeeType());
+            }
+
+            Divergence divergence = checkBatch(employees, hoursOrDays);
+            if (divergence != null) {
+                return divergence;
+            }
+            remaining -= batchSize;
+        }
+        return null;
+    }
+
+    private Divergence checkBatch(List<Employee> employees, double[] hoursOrDays) {
+        double[] defaultHoursOrDays = new double[employees.size()];
+        for (int i = 0; i < employees.size(); i++) {
+            defaultHoursOrDays[i] = reference.getDefaultHoursOrDays(employees.get(i).getEmployeeType());
+        }
+        for (Map.Entry<String, PayrollPath> path : paths.entrySet()) {
+            boolean defaultHours = defaultHoursPaths.contains(path.getKey());
+            double[] inputs = defaultHours ? defaultHoursOrDays : hoursOrDays;
+            List<PaySlip> actual = path.getValue().run(employees, inputs);
+            if (actual.size() != employees.size()) {
+                Case first = new Case(employees.get(0), inputs[0]);
+                return new Divergence(path.getKey(), first, shrink(path.getValue(), first, defaultHours),
+                        "returned " + actual.size() + " slips for " + employees.size() + " employees");
+            }
+            for (int i = 0; i < employees.size(); i++) {
+                PaySlip expected = reference.generatePaySlip(employees.get(i), inputs[i]);
+                String detail = compare(expected, actual.get(i));
+                if (detail != null) {
+                    Case failing = new Case(employees.get(i), inputs[i]);
+                    Case shrunk = shrink(path.getValue(), failing, defaultHours);
+                    return new Divergence(path.getKey(), failing, shrunk, describe(path.getValue(), shrunk));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a description of the first cent-level difference, or null if the slips agree.
+     */
+    private static String compare(PaySlip expected, PaySlip actual) {
+        if (cents(expected.getGrossPay()) != cents(actual.getGrossPay())) {
+            return mismatch("gross pay", expected.getGrossPay(), actual.getGrossPay());
+        }
+        if (cents(expected.getTaxAmount()) != cents(actual.getTaxAmount())) {
+            return mismatch("tax", expected.getTaxAmount(), actual.getTaxAmount());
+        }
+        Map<String, Double> expectedDeductions = expected.getDeductions();
+        Map<String, Double> actualDeductions = actual.getDeductions();
+        if (!expectedDeductions.keySet().equals(actualDeductions.keySet())) {
+            return "deductions expected " + expectedDeductions.keySet() + " but got " + actualDeductions.keySet();
+        }
+        for (Map.Entry<String, Double> entry : expectedDeductions.entrySet()) {
+            double actualAmount = actualDeductions.get(entry.getKey());
+            if (cents(entry.getValue()) != cents(actualAmount)) {
+                return mismatch(entry.getKey(), entry.getValue(), actualAmount);
+            }
+        }
+        if (cents(expected.getNetPay()) != cents(actual.getNetPay())) {
+            return mismatch("net pay", expected.getNetPay(), actual.getNetPay());
+        }
+        return null;
+    }
+
+    private static long cents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    private static String mismatch(String field, double expected, double actual) {
+        return String.format("%s expected %.2f but got %.2f", field, expected, actual);
+    }
+
+    private String describe(PayrollPath path, Case c) {
+        PaySlip expected = reference.generatePaySlip(c.getEmployee(), c.getHoursOrDays());
+        List<PaySlip> actual = path.run(Collections.singletonList(c.getEmployee()),
+                new double[] {c.getHoursOrDays()});
+        String detail = actual.size() == 1 ? compare(expected, actual.get(0)) : null;
+        return detail != null ? detail : "divergence only reproduces within the original batch";
+    }
+
+    private boolean fails(PayrollPath path, Case c) {
+        PaySlip expected = reference.generatePaySlip(c.getEmployee(), c.getHoursOrDays());
+        List<PaySlip> actual = path.run(Collections.singletonList(c.getEmployee()),
+                new double[] {c.getHoursOrDays()});
+        return actual.size() != 1 || compare(expected, actual.get(0)) != null;
+    }
+
+    /**
+     * Greedily simplifies a failing case while it keeps failing: clears flags,
+     * moves to simpler employee types, and rounds the pay rate and hours toward
+     * whole numbers and zero. For a default-hours path the hours always stay
+     * the default of the candidate's employee type.
+     */
+    Case shrink(PayrollPath path, Case failing, boolean defaultHours) {
+        if (!fails(path, failing)) {
+            return failing;
+        }
+        Case current = failing;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (Case candidate : simplifications(current)) {
+                if (defaultHours) {
+                    EmployeeType type = candidate.getEmployee().getEmployeeType();
+                    if (type == current.getEmployee().getEmployeeType()
+                            && candidate.getHoursOrDays() != current.getHoursOrDays()) {
+                        // The path cannot be given simpler hours
+                        continue;
+                    }
+                    candidate = new Case(candidate.getEmployee(), reference.getDefaultHoursOrDays(type));
+                }
+                if (fails(path, candidate)) {
+                    current = candidate;
+                    improved = true;
+                    break;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static List<Case> simplifications(Case c) {
+        Employee e = c.getEmployee();
+        double rate = e.getPayRate();
+        double hours = c.getHoursOrDays();
+        List<Case> candidates = new ArrayList<>();
+
+        if (e.isUnionMember()) {
+            candidates.add(with(e, e.getEmployeeType(), rate, false, e.hasRetirement(), hours));
+        }
+        if (e.hasRetirement()) {
+            candidates.add(with(e, e.getEmployeeType(), rate, e.isUnionMember(), false, hours));
+        }
+        for (EmployeeType type : EmployeeType.values()) {
+            if (type.ordinal() < e.getEmployeeType().ordinal()) {
+                candidates.add(with(e, type, rate, e.isUnionMember(), e.hasRetirement(), hours));
+            }
+        }
+        for (double simpler : simplerValues(rate)) {
+            candidates.add(with(e, e.getEmployeeType(), simpler, e.isUnionMember(), e.hasRetirement(), hours));
+        }
+        for (double simpler : simplerValues(hours)) {
+            candidates.add(with(e, e.getEmployeeType(), rate, e.isUnionMember(), e.hasRetirement(), simpler));
+        }
+        return candidates;
+    }
+
+    /**
+     * Candidate values strictly simpler than the given one: zero, the whole-number
+     * part, half (rounded to cents), and one cent closer to zero.
+     */
+    private static List<Double> simplerValues(double value) {
+        List<Double> values = new ArrayList<>();
+        if (value == 0) {
+            return values;
+        }
+        values.add(0.0);
+        double whole = Math.floor(value);
+        if (whole != value) {
+            values.add(whole);
+        }
+        double half = Math.round(value * 50) / 100.0;
+        if (half != value && half != 0) {
+            values.add(half);
+        }
+        double oneCentLess = Math.round(value * 100 - 1) / 100.0;
+        if (oneCentLess >= 0 && oneCentLess != value) {
+            values.add(oneCentLess);
+        }
+        return values;
+    }
+
+    private static Case with(Employee e, EmployeeType type, double rate, boolean union,
+                             boolean retirement, double hours) {
+        return new Case(new Employee(e.getId(), e.getName(), type, rate, union, retirement), hours);
+    }
+
+    private Employee randomEmployee(int index) {
+        EmployeeType type = EmployeeType.values()[random.nextInt(EmployeeType.values().length)];
+        double maxRate;
+        switch (type) {
+            case FULL_TIME:
+                maxRate = 20000.0;
+                break;
+            case PART_TIME:
+                maxRate = 200.0;
+                break;
+            default:
+                maxRate = 1500.0;
+                break;
+        }
+        double rate = Math.round(random.nextDouble() * maxRate * 100) / 100.0;
+        return new Employee("R" + index, "Random " + index, type, rate,
+                random.nextBoolean(), random.nextBoolean());
+    }
+
+    private double randomHoursOrDays(EmployeeType type) {
+        switch (type) {
+            case PART_TIME:
+                // Quarter hours, including values above the 120 hour cap
+                return random.nextInt(200 * 4 + 1) / 4.0;
+            case CONTRACTOR:
+                return random.nextInt(32);
+            default:
+                return 0;
+        }
+    }
+
+    public static void main(String[] args) {
+        int cases = args.length >= 1 ? Integer.parseInt(args[0]) : DEFAULT_CASES;
+        long seed = args.length >= 2 ? Long.parseLong(args[1]) : System.nanoTime();
+
+        PayrollDifferentialHarness harness = new PayrollDifferentialHarness(seed);
+        harness.addBuiltInPaths();
+
+        System.out.printf("Running %,d cases against %d path(s), seed %d%n", cases, harness.paths.size(), seed);
+        long start = System.nanoTime();
+        Divergence divergence = harness.run(cases);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        if (divergence != null) {
+            System.out.println(divergence);
+            System.exit(1);
+        }
+        System.out.printf("All paths agree with the reference (%d ms)%n", elapsedMs);
+    }
+}
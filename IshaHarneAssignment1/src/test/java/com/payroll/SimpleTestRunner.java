@@ -1,5 +1,7 @@
 package com.payroll;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +37,12 @@ public class SimpleTestRunner {
         // Integration Tests
         runIntegrationTests();
 
+        // Reconciliation Tests
+        runReconciliationTests();
+
+        // Differential Tests
+        runDifferentialTests();
+
         // Print summary
         System.out.println();
         System.out.println("=".repeat(60));
@@ -202,6 +210,126 @@ public class SimpleTestRunner {
         System.out.println();
     }
 
+    private static void runReconciliationTests() {
+        System.out.println("--- Reconciliation Tests ---");
+
+        List<PaySlip> lastMonth = processor.processMonthlyPayroll(Arrays.asList(
+                new Employee("E003", "CT", EmployeeType.CONTRACTOR, 300.00, false, false),
+                new Employee("E001", "FT", EmployeeType.FULL_TIME, 5000.00, false, false),
+                new Employee("E002", "PT", EmployeeType.PART_TIME, 25.00, false, false)
+        ));
+        List<PaySlip> thisMonth = processor.processMonthlyPayroll(Arrays.asList(
+                new Employee("E004", "New", EmployeeType.FULL_TIME, 4000.00, false, false),
+                new Employee("E001", "FT", EmployeeType.FULL_TIME, 5000.00, false, false),
+                new Employee("E003", "CT", EmployeeType.CONTRACTOR, 310.00, false, true)
+        ));
+
+        try {
+            ReconciliationReport report = new PayrollReconciler(1.00).reconcile(lastMonth, thisMonth);
+            assertEqual("Reconcile matched count", 2, report.getMatchedCount());
+            assertEqual("Reconcile added employee", "[E004]", report.getAddedEmployees().toString());
+            assertEqual("Reconcile removed employee", "[E002]", report.getRemovedEmployees().toString());
+            // E003: gross 6600 -> 6820, tax 1080 -> 1146, retirement 0 -> 341, total and net change too
+            assertEqual("Reconcile delta count", 5, report.getDeltas().size());
+            assertEqual("Reconcile gross delta", 220.00, report.getDeltas().get(0).getDelta());
+            assertEqual("Reconcile new deduction field", "Retirement (5%)", report.getDeltas().get(2).getField());
+
+            ReconciliationReport loose = new PayrollReconciler(300.00).reconcile(lastMonth, thisMonth);
+            assertEqual("Reconcile threshold filters small deltas", 2, loose.getDeltas().size());
+
+            // A tiny in-memory limit forces every run through the spill-and-merge path
+            List<PaySlip> large = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                large.add(processor.generatePaySlip(new Employee(String.format("S%03d", 49 - i), "Spill",
+                        EmployeeType.PART_TIME, 20.00 + i, false, false), 100));
+            }
+            ReconciliationReport spilled = new PayrollReconciler(0.00, 7, null).reconcile(large, large);
+            assertEqual("Spilled reconcile matches all", 50, spilled.getMatchedCount());
+            assertTrue("Spilled reconcile finds no anomalies", !spilled.hasAnomalies());
+
+            boolean rejected = false;
+            try {
+                new PayrollReconciler(0.00).reconcile(lastMonth, Arrays.asList(thisMonth.get(1), thisMonth.get(1)));
+            } catch (IllegalArgumentException e) {
+                rejected = true;
+            }
+            assertTrue("Reconcile rejects duplicate IDs", rejected);
+        } catch (IOException e) {
+            assertTrue("Reconcile I/O failed: " + e.getMessage(), false);
+        }
+
+        System.out.println();
+    }
+
+    private static void runDifferentialTests() {
+        System.out.println("--- Differential Tests ---");
+
+        PayrollDifferentialHarness harness = new PayrollDifferentialHarness(12345L);
+        harness.addBuiltInPaths();
+        assertTrue("Built-in paths agree on 20,000 random cases", harness.run(20_000) == null);
+
+        // A deliberately broken path: contractors lose their union dues
+        PayrollDifferentialHarness broken = new PayrollDifferentialHarness(12345L);
+        broken.addPath("no-contractor-dues", (employees, hoursOrDays) -> {
+            List<PaySlip> slips = new ArrayList<>();
+            for (int i = 0; i < employees.size(); i++) {
+                Employee e = employees.get(i);
+                if (e.getEmployeeType() == EmployeeType.CONTRACTOR && e.isUnionMember()) {
+                    e = new Employee(e.getId(), e.getName(), e.getEmployeeType(), e.getPayRate(),
+                            false, e.hasRetirement());
+                }
+                slips.add(processor.generatePaySlip(e, hoursOrDays[i]));
+            }
+            return slips;
+        });
+        PayrollDifferentialHarness.Divergence divergence = broken.run(20_000);
+        assertTrue("Broken path is detected", divergence != null);
+        if (divergence != null) {
+            Employee shrunk = divergence.getShrunk().getEmployee();
+            assertTrue("Shrunk case keeps the failing type", shrunk.getEmployeeType() == EmployeeType.CONTRACTOR);
+            assertTrue("Shrunk case keeps the failing flag", shrunk.isUnionMember());
+            assertTrue("Shrunk case drops irrelevant flags", !shrunk.hasRetirement());
+            assertEqual("Shrunk case pay rate", 0.00, shrunk.getPayRate());
+            assertEqual("Shrunk case days", 0.00, divergence.getShrunk().getHoursOrDays());
+        }
+
+        // A path that loses a slip still reports a case to reproduce with
+        PayrollDifferentialHarness dropping = new PayrollDifferentialHarness(12345L);
+        dropping.addPath("drops-last-slip", (employees, hoursOrDays) -> {
+            List<PaySlip> slips = new ArrayList<>();
+            for (int i = 0; i < employees.size() - 1; i++) {
+                slips.add(processor.generatePaySlip(employees.get(i), hoursOrDays[i]));
+            }
+            return slips;
+        });
+        divergence = dropping.run(100);
+        assertTrue("Missing slip is detected", divergence != null);
+        assertTrue("Missing slip divergence has a case",
+                divergence != null && divergence.getOriginal() != null && divergence.getShrunk() != null);
+
+        // A default-hours path is compared on the default hours, and shrinks on them too
+        PayrollDifferentialHarness monthly = new PayrollDifferentialHarness(12345L);
+        monthly.addDefaultHoursPath("part-time-capped-at-100", (employees, hoursOrDays) -> {
+            List<PaySlip> slips = new ArrayList<>();
+            for (Employee e : employees) {
+                double hours = e.getEmployeeType() == EmployeeType.PART_TIME ? 100 : 0;
+                slips.add(processor.generatePaySlip(e,
+                        e.getEmployeeType() == EmployeeType.CONTRACTOR ? 22 : hours));
+            }
+            return slips;
+        });
+        divergence = monthly.run(1_000);
+        assertTrue("Broken default-hours path is detected", divergence != null);
+        if (divergence != null) {
+            assertTrue("Default-hours case keeps part-time",
+                    divergence.getShrunk().getEmployee().getEmployeeType() == EmployeeType.PART_TIME);
+            assertEqual("Default-hours case keeps the default hours", 120.00,
+                    divergence.getShrunk().getHoursOrDays());
+        }
+
+        System.out.println();
+    }
+
     private static void assertEqual(String testName, double expected, double actual) {
         if (Math.abs(expected - actual) < 0.01) {
             System.out.printf("  [PASS] %s%n", testName);
@@ -0,0 +1,110 @@
+package textbench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+/**
+ * Calls into the analyzer classes, which live in the default package.
+ * JMH does not accept benchmarks in the default package and Java cannot import
+ * from it, so each call goes through a constant method handle with its types
+ * erased to Object. The JIT inlines constant handles, so the cost per call is
+ * a few nanoseconds at most.
+ */
+final class Analyzer {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final MethodHandle NEW_TEXT_READER =
+            constructor("TextReader", String.class);
+    private static final MethodHandle READ_AND_NORMALIZE =
+            method("TextReader", "readAndNormalize", String.class);
+    private static final MethodHandle NEW_WORD_COUNTER =
+            constructor("WordCounter");
+    private static final MethodHandle PROCESS_TEXT =
+            method("WordCounter", "processText", void.class, String.class);
+    private static final MethodHandle GET_TOP_N_WORDS =
+            method("WordCounter", "getTopNWords", List.class, int.class);
+    private static final MethodHandle GET_WORDS_STARTING_WITH =
+            method("WordCounter", "getWordsStartingWith", List.class, String.class);
+    private static final MethodHandle NEW_STATISTICS_REPORT =
+            constructor("StatisticsReport", type("WordStatistics"), String.class);
+    private static final MethodHandle GENERATE_REPORT =
+            method("StatisticsReport", "generateReport", String.class);
+    private static final MethodHandle NEW_MAPPED_TEXT_READER =
+            constructor("MappedTextReader", String.class);
+    private static final MethodHandle COUNT_WORDS =
+            method("MappedTextReader", "countWords", void.class, type("WordCounter"));
+
+    private Analyzer() {
+    }
+
+    static Object newTextReader(String filePath) throws Throwable {
+        return (Object) NEW_TEXT_READER.invokeExact((Object) filePath);
+    }
+
+    static String readAndNormalize(Object textReader) throws Throwable {
+        return (String) (Object) READ_AND_NORMALIZE.invokeExact(textReader);
+    }
+
+    static Object newWordCounter() throws Throwable {
+        return (Object) NEW_WORD_COUNTER.invokeExact();
+    }
+
+    static void processText(Object wordCounter, String normalizedText) throws Throwable {
+        PROCESS_TEXT.invokeExact(wordCounter, (Object) normalizedText);
+    }
+
+    static List<?> getTopNWords(Object wordCounter, int n) throws Throwable {
+        return (List<?>) (Object) GET_TOP_N_WORDS.invokeExact(wordCounter, n);
+    }
+
+    static List<?> getWordsStartingWith(Object wordCounter, String prefix) throws Throwable {
+        return (List<?>) (Object) GET_WORDS_STARTING_WITH.invokeExact(wordCounter, (Object) prefix);
+    }
+
+    static Object newStatisticsReport(Object wordCounter, String sourceFile) throws Throwable {
+        return (Object) NEW_STATISTICS_REPORT.invokeExact(wordCounter, (Object) sourceFile);
+    }
+
+    static String generateReport(Object statisticsReport) throws Throwable {
+        return (String) (Object) GENERATE_REPORT.invokeExact(statisticsReport);
+    }
+
+    static Object newMappedTextReader(String filePath) throws Throwable {
+        return (Object) NEW_MAPPED_TEXT_READER.invokeExact((Object) filePath);
+    }
+
+    static void countWords(Object mappedTextReader, Object wordCounter) throws Throwable {
+        COUNT_WORDS.invokeExact(mappedTextReader, wordCounter);
+    }
+
+    private static MethodHandle constructor(String className, Class<?>... parameterTypes) {
+        try {
+            MethodHandle handle = LOOKUP.findConstructor(type(className),
+                    MethodType.methodType(void.class, parameterTypes));
+            return handle.asType(handle.type().erase());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Missing constructor of " + className, e);
+        }
+    }
+
+    private static MethodHandle method(String className, String name, Class<?> returnType,
+                                       Class<?>... parameterTypes) {
+        try {
+            MethodHandle handle = LOOKUP.findVirtual(type(className), name,
+                    MethodType.methodType(returnType, parameterTypes));
+            return handle.asType(handle.type().erase());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Missing method " + className + "." + name, e);
+        }
+    }
+
+    private static Class<?> type(String className) {
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Analyzer class not on the class path: " + className, e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package textbench;
+
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * Entry point of benchmarks.jar. Takes the usual JMH command line, always
+ * enables the GC profiler, and after the JMH results prints every corpus
+ * benchmark's throughput in MB/s and the bytes it allocated per token
+ * (gc.alloc.rate.norm divided by the corpus's token count).
+ */
+public class BenchmarkMain {
+    private static final String ALLOCATION_PER_OP = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine);
+        if (!hasGcProfiler(commandLine)) {
+            options.addProfiler(GCProfiler.class);
+        }
+        Collection<RunResult> results = new Runner(options.build()).run();
+        printCorpusSummary(results, System.out);
+    }
+
+    private static boolean hasGcProfiler(Options options) {
+        for (ProfilerConfig profiler : options.getProfilers()) {
+            if (profiler.getKlass().equals("gc") || profiler.getKlass().equals(GCProfiler.class.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static void printCorpusSummary(Collection<RunResult> results, PrintStream out) throws Exception {
+        out.println();
+        out.println("Corpus throughput");
+        out.println(String.format("%-45s %8s %12s %12s", "Benchmark", "Size", "MB/s", "B/token"));
+
+        for (RunResult result : results) {
+            BenchmarkParams params = result.getParams();
+            if (!scansCorpus(params.getBenchmark())) {
+                continue;
+            }
+            ZipfCorpus corpus = ZipfCorpus.of(params.getParam("size"));
+            double seconds = secondsPerOperation(params, result.getPrimaryResult().getScore());
+            double megabytesPerSecond = corpus.bytes() / 1e6 / seconds;
+
+            String perToken = "n/a";
+            Result allocation = secondary(result, ALLOCATION_PER_OP);
+            if (allocation != null) {
+                perToken = String.format("%.3f", allocation.getScore() / corpus.tokens());
+            }
+            out.println(String.format("%-45s %8s %12.1f %12s", shortName(params.getBenchmark()),
+                    params.getParam("size"), megabytesPerSecond, perToken));
+        }
+    }
+
+    private static boolean scansCorpus(String benchmark) throws ClassNotFoundException {
+        int dot = benchmark.lastIndexOf('.');
+        Class<?> type = Class.forName(benchmark.substring(0, dot));
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(benchmark.substring(dot + 1))) {
+                return method.isAnnotationPresent(ScansCorpus.class);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Converts the primary score to seconds per operation for the time based
+     * modes, where it is time per op, and for throughput, where it is ops per time.
+     */
+    private static double secondsPerOperation(BenchmarkParams params, double score) {
+        double unitSeconds = params.getTimeUnit().toNanos(1) / (double) TimeUnit.SECONDS.toNanos(1);
+        switch (params.getMode()) {
+            case Throughput:
+                return unitSeconds / score;
+            default:
+                return score * unitSeconds;
+        }
+    }
+
+    private static Result secondary(RunResult result, String label) {
+        // Older JMH versions prefix profiler labels with a middle dot
+        for (Map.Entry<String, Result> entry : result.getSecondaryResults().entrySet()) {
+            if (entry.getKey().endsWith(label)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String shortName(String benchmark) {
+        int classStart = benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1);
+        return benchmark.substring(classStart + 1);
+    }
+}
@@ -0,0 +1,48 @@
+package textbench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Counting a file through MappedTextReader, which never holds the text in
+ * memory and so scales to corpora far larger than the heap. The 10GB corpus
+ * takes a while to generate and is left out by default; run it with
+ * -p size=10GB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dfile.encoding=UTF-8"})
+public class MappedCountingBenchmark {
+    @Param({"128MB", "1GB"})
+    public String size;
+
+    private String path;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        path = ZipfCorpus.of(size).path();
+    }
+
+    @Benchmark
+    @ScansCorpus
+    public Object countWords() throws Throwable {
+        Object wordCounter = Analyzer.newWordCounter();
+        Analyzer.countWords(Analyzer.newMappedTextReader(path), wordCounter);
+        return wordCounter;
+    }
+}
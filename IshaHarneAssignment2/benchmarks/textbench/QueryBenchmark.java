@@ -0,0 +1,76 @@
+package textbench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Queries and report generation on a WordCounter that has already counted a
+ * corpus. The prefix index is built on the first prefix query and reused, so
+ * getWordsStartingWith measures lookups on a warm index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dfile.encoding=UTF-8"})
+public class QueryBenchmark {
+    @Param({"16MB"})
+    public String size;
+
+    private String path;
+    private Object wordCounter;
+
+    /**
+     * Number of top words requested.
+     */
+    @State(Scope.Thread)
+    public static class TopN {
+        @Param({"10", "100", "1000"})
+        public int n;
+    }
+
+    /**
+     * Prefixes matching a large, a medium and a small share of the vocabulary.
+     */
+    @State(Scope.Thread)
+    public static class Prefix {
+        @Param({"s", "st", "stra"})
+        public String prefix;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        path = ZipfCorpus.of(size).path();
+        wordCounter = Analyzer.newWordCounter();
+        Analyzer.processText(wordCounter, Analyzer.readAndNormalize(Analyzer.newTextReader(path)));
+    }
+
+    @Benchmark
+    public List<?> getTopNWords(TopN topN) throws Throwable {
+        return Analyzer.getTopNWords(wordCounter, topN.n);
+    }
+
+    @Benchmark
+    public List<?> getWordsStartingWith(Prefix prefix) throws Throwable {
+        return Analyzer.getWordsStartingWith(wordCounter, prefix.prefix);
+    }
+
+    @Benchmark
+    public String generateReport() throws Throwable {
+        return Analyzer.generateReport(Analyzer.newStatisticsReport(wordCounter, path));
+    }
+}
@@ -0,0 +1,16 @@
+package textbench;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a benchmark whose every operation processes the whole corpus named by
+ * its "size" parameter, so BenchmarkMain can report it in MB/s and bytes
+ * allocated per token.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@interface ScansCorpus {
+}
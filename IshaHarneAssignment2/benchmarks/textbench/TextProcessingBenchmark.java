@@ -0,0 +1,57 @@
+package textbench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading and counting a whole document held in memory, as TextAnalyzer did
+ * before the streaming paths: TextReader.readAndNormalize and
+ * WordCounter.processText. Both keep the full text in one String, so sizes
+ * are limited by the heap and by the maximum String length (2^31 - 1 chars);
+ * larger corpora are covered by MappedCountingBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dfile.encoding=UTF-8", "-Xms2g", "-Xmx2g"})
+public class TextProcessingBenchmark {
+    @Param({"1MB", "16MB", "128MB"})
+    public String size;
+
+    private String path;
+    private String normalizedText;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        path = ZipfCorpus.of(size).path();
+        normalizedText = Analyzer.readAndNormalize(Analyzer.newTextReader(path));
+    }
+
+    @Benchmark
+    @ScansCorpus
+    public String readAndNormalize() throws Throwable {
+        return Analyzer.readAndNormalize(Analyzer.newTextReader(path));
+    }
+
+    @Benchmark
+    @ScansCorpus
+    public Object processText() throws Throwable {
+        Object wordCounter = Analyzer.newWordCounter();
+        Analyzer.processText(wordCounter, normalizedText);
+        return wordCounter;
+    }
+}
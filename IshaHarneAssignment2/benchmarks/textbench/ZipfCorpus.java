@@ -0,0 +1,222 @@
+package textbench;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generated benchmark input: English-like sentences whose words follow a
+ * Zipf distribution over a fixed synthetic vocabulary, as natural language
+ * roughly does. A corpus is identified by its size ("1MB", "10GB", decimal
+ * units), generated once from a fixed seed and cached in the corpus directory
+ * (the textbench.corpusDir property, target/corpus by default) together with
+ * a properties file recording its byte and token counts.
+ */
+final class ZipfCorpus {
+    static final int VOCABULARY_SIZE = 50000;
+    static final double EXPONENT = 1.0;
+
+    private static final long SEED = 20240101L;
+    private static final Pattern SIZE = Pattern.compile("(\\d+)(KB|MB|GB)");
+    private static final String[] SYLLABLES = {
+        "a", "al", "an", "ar", "be", "ca", "co", "de", "di", "en", "er", "es",
+        "fa", "fo", "ga", "he", "in", "is", "ka", "la", "le", "li", "lo", "ma",
+        "me", "mi", "mo", "na", "ne", "no", "on", "or", "pa", "pe", "pro", "qu",
+        "ra", "re", "ri", "ro", "sa", "se", "so", "st", "str", "ta", "te", "th",
+        "ti", "to", "tr", "un", "ve", "vi", "wa", "we", "wh", "ya"
+    };
+
+    private final File file;
+    private final long bytes;
+    private final long tokens;
+
+    private ZipfCorpus(File file, long bytes, long tokens) {
+        this.file = file;
+        this.bytes = bytes;
+        this.tokens = tokens;
+    }
+
+    /**
+     * Returns the corpus of the given size, generating it if it is not cached.
+     */
+    static synchronized ZipfCorpus of(String size) throws IOException {
+        File directory = new File(System.getProperty("textbench.corpusDir", "target/corpus"));
+        File file = new File(directory, "zipf-" + size + ".txt");
+        File metadata = new File(directory, "zipf-" + size + ".properties");
+        if (!file.isFile() || !metadata.isFile()) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create corpus directory " + directory);
+            }
+            generate(file, metadata, parseSize(size));
+        }
+
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(metadata);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return new ZipfCorpus(file,
+                Long.parseLong(properties.getProperty("bytes")),
+                Long.parseLong(properties.getProperty("tokens")));
+    }
+
+    String path() {
+        return file.getPath();
+    }
+
+    long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Number of words in the corpus before length and stop word filtering.
+     */
+    long tokens() {
+        return tokens;
+    }
+
+    /**
+     * Parses "64KB", "1MB" or "10GB" into a byte count.
+     */
+    static long parseSize(String size) {
+        Matcher matcher = SIZE.matcher(size);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Corpus size must look like 1MB or 10GB: " + size);
+        }
+        long value = Long.parseLong(matcher.group(1));
+        String unit = matcher.group(2);
+        if (unit.equals("KB")) {
+            return value * 1000L;
+        } else if (unit.equals("MB")) {
+            return value * 1000L * 1000L;
+        }
+        return value * 1000L * 1000L * 1000L;
+    }
+
+    private static void generate(File file, File metadata, long targetBytes) throws IOException {
+        Random random = new Random(SEED);
+        byte[][] vocabulary = vocabulary(random);
+        double[] cumulative = cumulativeWeights();
+
+        File partial = new File(file.getPath() + ".partial");
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(partial), 1 << 16);
+        long bytes = 0;
+        long tokens = 0;
+        try {
+            int lineLength = 0;
+            while (bytes < targetBytes) {
+                // One sentence: capitalized first word, the odd comma, a full stop
+                int sentenceLength = 6 + random.nextInt(15);
+                for (int i = 0; i < sentenceLength; i++) {
+                    byte[] word = vocabulary[sample(cumulative, random.nextDouble())];
+                    if (i == 0) {
+                        out.write(word[0] - ('a' - 'A'));
+                        out.write(word, 1, word.length - 1);
+                    } else {
+                        out.write(word);
+                    }
+                    int written = word.length;
+                    if (i == sentenceLength - 1) {
+                        out.write('.');
+                        written++;
+                    } else if (random.nextInt(10) == 0) {
+                        out.write(',');
+                        written++;
+                    }
+                    lineLength += written;
+                    if (lineLength >= 72) {
+                        out.write('\n');
+                        lineLength = 0;
+                    } else {
+                        out.write(' ');
+                        lineLength++;
+                    }
+                    bytes += written + 1;
+                    tokens++;
+                }
+            }
+        } finally {
+            out.close();
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("bytes", Long.toString(bytes));
+        properties.setProperty("tokens", Long.toString(tokens));
+        OutputStream metadataOut = new FileOutputStream(metadata);
+        try {
+            properties.store(metadataOut, "Zipf corpus, exponent " + EXPONENT
+                    + ", vocabulary " + VOCABULARY_SIZE);
+        } finally {
+            metadataOut.close();
+        }
+        if (!partial.renameTo(file)) {
+            throw new IOException("Cannot move " + partial + " to " + file);
+        }
+    }
+
+    /**
+     * Distinct lowercase words of one to four syllables. Shorter words are
+     * generated first, so they land on the frequent ranks as in real text.
+     */
+    private static byte[][] vocabulary(Random random) {
+        Set<String> seen = new HashSet<String>();
+        String[] words = new String[VOCABULARY_SIZE];
+        int size = 0;
+        int attempts = 0;
+        while (size < VOCABULARY_SIZE) {
+            int syllables = 1 + Math.min(3, attempts / 2000 + random.nextInt(2));
+            StringBuilder word = new StringBuilder();
+            for (int i = 0; i < syllables; i++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            if (seen.add(word.toString())) {
+                words[size] = word.toString();
+                size++;
+            }
+            attempts++;
+        }
+
+        byte[][] encoded = new byte[VOCABULARY_SIZE][];
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            encoded[i] = words[i].getBytes();
+        }
+        return encoded;
+    }
+
+    /**
+     * Cumulative probability of ranks 0..i, with rank r weighted 1 / (r + 1)^s.
+     */
+    private static double[] cumulativeWeights() {
+        double[] cumulative = new double[VOCABULARY_SIZE];
+        double total = 0;
+        for (int rank = 0; rank < VOCABULARY_SIZE; rank++) {
+            total += 1.0 / Math.pow(rank + 1, EXPONENT);
+            cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < VOCABULARY_SIZE; rank++) {
+            cumulative[rank] /= total;
+        }
+        return cumulative;
+    }
+
+    private static int sample(double[] cumulative, double u) {
+        int index = Arrays.binarySearch(cumulative, u);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return Math.min(index, cumulative.length - 1);
+    }
+}
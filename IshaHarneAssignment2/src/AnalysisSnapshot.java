@@ -0,0 +1,176 @@
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable copy of a WordCounter's results, safe to query from any number of
+ * threads without locking. The vocabulary is held sorted for word and prefix
+ * lookups and ranked by count for top word queries, so every query reads
+ * arrays that never change after construction.
+ */
+public final class AnalysisSnapshot implements WordStatistics {
+    // Only the most frequent n-grams are copied; there may be millions
+    private static final int RANKED_NGRAM_LIMIT = 1000;
+
+    private final PrefixIndex index;
+
+    // All words ranked by count descending, then alphabetically
+    private final String[] rankedWords;
+    private final int[] rankedCounts;
+
+    private final long totalWords;
+    private final double averageWordLength;
+    private final String longestWord;
+    private final long[] wordLengthCounts;
+    private final String mostFrequentWord;
+    private final int mostFrequentWordCount;
+    private final int nGramSize;
+    private final List<Map.Entry<String, Integer>> rankedNGrams;
+    private final Set<String> stopWords;
+
+    /**
+     * Copies the counter's current results. The counter must not be changed
+     * while the snapshot is taken, but may be changed freely afterwards.
+     */
+    public AnalysisSnapshot(WordCounter wordCounter) {
+        WordTable table = wordCounter.getWordTable();
+        this.index = new PrefixIndex(table);
+
+        int[] ranked = TopWords.select(table, table.size());
+        this.rankedWords = new String[ranked.length];
+        this.rankedCounts = new int[ranked.length];
+        for (int i = 0; i < ranked.length; i++) {
+            rankedWords[i] = table.word(ranked[i]);
+            rankedCounts[i] = table.count(ranked[i]);
+        }
+
+        this.totalWords = wordCounter.getTotalWords();
+        this.averageWordLength = wordCounter.getAverageWordLength();
+        this.longestWord = wordCounter.getLongestWord();
+        this.wordLengthCounts = wordCounter.getWordLengthCounts();
+        this.mostFrequentWord = wordCounter.getMostFrequentWord();
+        this.mostFrequentWordCount = wordCounter.getMostFrequentWordCount();
+        this.nGramSize = wordCounter.getNGramSize();
+        this.rankedNGrams = Collections.unmodifiableList(
+                wordCounter.getTopNGrams(RANKED_NGRAM_LIMIT));
+        this.stopWords = wordCounter.getStopWordsView();
+    }
+
+    /**
+     * Gets the total count of words (after filtering), or Integer.MAX_VALUE if
+     * there are more.
+     */
+    public int getTotalWordCount() {
+        return (int) Math.min(totalWords, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the total count of words (after filtering) as a long.
+     */
+    public long getTotalWords() {
+        return totalWords;
+    }
+
+    /**
+     * Gets the count of unique words.
+     */
+    public int getUniqueWordCount() {
+        return rankedWords.length;
+    }
+
+    /**
+     * Gets the average word length.
+     */
+    public double getAverageWordLength() {
+        return averageWordLength;
+    }
+
+    /**
+     * Gets the longest word (alphabetically first on ties).
+     */
+    public String getLongestWord() {
+        return longestWord;
+    }
+
+    /**
+     * Gets a copy of the number of counted words of each length (index = length).
+     */
+    public long[] getWordLengthCounts() {
+        return Arrays.copyOf(wordLengthCounts, wordLengthCounts.length);
+    }
+
+    /**
+     * Gets the most frequent word (alphabetically first on ties).
+     */
+    public String getMostFrequentWord() {
+        return mostFrequentWord;
+    }
+
+    /**
+     * Gets the frequency of the most frequent word.
+     */
+    public int getMostFrequentWordCount() {
+        return mostFrequentWordCount;
+    }
+
+    /**
+     * Returns the n most frequent words sorted by count descending, then
+     * alphabetically, read straight from the precomputed ranking.
+     */
+    public List<Map.Entry<String, Integer>> getTopNWords(int n) {
+        int limit = Math.max(0, Math.min(n, rankedWords.length));
+        List<Map.Entry<String, Integer>> topN = new ArrayList<Map.Entry<String, Integer>>(limit);
+        for (int rank = 0; rank < limit; rank++) {
+            topN.add(new AbstractMap.SimpleImmutableEntry<String, Integer>(rankedWords[rank], rankedCounts[rank]));
+        }
+        return topN;
+    }
+
+    /**
+     * Gets the n-gram size that was counted, or 0 if n-grams were not counted.
+     */
+    public int getNGramSize() {
+        return nGramSize;
+    }
+
+    /**
+     * Returns the n most frequent n-grams, sorted by count descending, then alphabetically.
+     * The snapshot keeps the 1000 most frequent, so at most 1000 are returned.
+     */
+    public List<Map.Entry<String, Integer>> getTopNGrams(int n) {
+        int limit = Math.max(0, Math.min(n, rankedNGrams.size()));
+        return new ArrayList<Map.Entry<String, Integer>>(rankedNGrams.subList(0, limit));
+    }
+
+    /**
+     * Returns words starting with the given prefix, sorted alphabetically.
+     */
+    public List<String> getWordsStartingWith(String prefix) {
+        return index.wordsStartingWith(prefix.toLowerCase());
+    }
+
+    /**
+     * Returns the words starting with the given prefix with their counts, sorted alphabetically.
+     */
+    public List<Map.Entry<String, Integer>> getWordCountsStartingWith(String prefix) {
+        return index.countsStartingWith(prefix.toLowerCase());
+    }
+
+    /**
+     * Gets the frequency of a specific word, found by binary search.
+     */
+    public int getWordCount(String word) {
+        return index.count(word.toLowerCase());
+    }
+
+    /**
+     * Gets a read-only view of the stop words excluded from counting.
+     */
+    public Set<String> getStopWordsView() {
+        return stopWords;
+    }
+}
@@ -0,0 +1,304 @@
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Counts words approximately in fixed memory, for inputs whose vocabulary is
+ * too large to count exactly. Words are filtered exactly like WordCounter does.
+ *
+ * - Per-word counts come from a Count-Min Sketch and never undercount; with
+ *   probability 1 - delta they overcount by at most epsilon * total words.
+ * - The top words come from Space-Saving, which tracks topWordCapacity words and
+ *   is guaranteed to hold every word occurring more than total / capacity times.
+ * - The number of unique words is a HyperLogLog estimate.
+ * - Totals, average length, longest word and the length histogram are exact.
+ *
+ * Memory does not grow with the input, only with the chosen error bounds.
+ */
+public class ApproximateWordCounter implements TokenSink, WordStatistics {
+    private CountMinSketch sketch;
+    private SpaceSaving heavyHitters;
+    private HyperLogLog distinctWords;
+    private double epsilon;
+
+    private StopWordFilter stopWordFilter;
+
+    private long totalWords;
+    private long totalCharacters;
+    private long[] lengthCounts;
+    private String longestWord;
+
+    /**
+     * Creates a counter with a 0.01% frequency error bound at 99% confidence,
+     * 1000 tracked top words and unique word estimates within about 1%.
+     * Uses about 1.3 MB.
+     */
+    public ApproximateWordCounter() {
+        this(0.0001, 0.01, 1000, 14);
+    }
+
+    /**
+     * Creates a counter with explicit error bounds.
+     *
+     * @param epsilon          frequency error bound as a fraction of the total word count
+     * @param delta            probability that a frequency estimate exceeds the bound
+     * @param topWordCapacity  number of words tracked as top word candidates
+     * @param uniquePrecision  HyperLogLog precision (4-18); the unique word estimate
+     *                         has a relative error of about 1.04 / sqrt(2^precision)
+     */
+    public ApproximateWordCounter(double epsilon, double delta, int topWordCapacity, int uniquePrecision) {
+        this(epsilon, delta, topWordCapacity, uniquePrecision, new WordCounter().getStopWordFilter());
+    }
+
+    /**
+     * Creates a counter with explicit error bounds and stop word filter.
+     */
+    public ApproximateWordCounter(double epsilon, double delta, int topWordCapacity, int uniquePrecision,
+            StopWordFilter stopWordFilter) {
+        this.sketch = new CountMinSketch(epsilon, delta);
+        this.heavyHitters = new SpaceSaving(topWordCapacity);
+        this.distinctWords = new HyperLogLog(uniquePrecision);
+        this.epsilon = epsilon;
+        this.lengthCounts = new long[32];
+        this.longestWord = "";
+        this.stopWordFilter = stopWordFilter;
+    }
+
+    /**
+     * Tokenizes and counts raw text, adding to the existing counts.
+     */
+    public void processRawText(String rawText) {
+        new TextTokenizer().tokenize(rawText, this);
+    }
+
+    /**
+     * Filters and counts one word produced by TextTokenizer.
+     */
+    public void acceptToken(char[] buffer, int offset, int length) {
+        if (!stopWordFilter.accepts(buffer, offset, length)) {
+            return;
+        }
+
+        long hash = hash(buffer, offset, length);
+        sketch.add(hash);
+        heavyHitters.add(buffer, offset, length, (int) hash);
+        distinctWords.add(hash);
+
+        totalWords++;
+        totalCharacters += length;
+        if (length >= lengthCounts.length) {
+            lengthCounts = Arrays.copyOf(lengthCounts, Math.max(length + 1, lengthCounts.length * 2));
+        }
+        lengthCounts[length]++;
+        if (length >= longestWord.length()) {
+            String word = new String(buffer, offset, length);
+            if (length > longestWord.length() || word.compareTo(longestWord) < 0) {
+                longestWord = word;
+            }
+        }
+    }
+
+    /**
+     * Gets the total count of words (after filtering), or Integer.MAX_VALUE if
+     * there are more. Exact.
+     */
+    public int getTotalWordCount() {
+        return (int) Math.min(totalWords, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the total count of words (after filtering) as a long. Exact.
+     */
+    public long getTotalWords() {
+        return totalWords;
+    }
+
+    /**
+     * Gets the estimated count of unique words.
+     */
+    public int getUniqueWordCount() {
+        return (int) Math.min(distinctWords.estimate(), totalWords);
+    }
+
+    /**
+     * Calculates the average word length. Exact.
+     */
+    public double getAverageWordLength() {
+        if (totalWords == 0) {
+            return 0.0;
+        }
+        return (double) totalCharacters / totalWords;
+    }
+
+    /**
+     * Finds the longest word (alphabetically first on ties). Exact.
+     */
+    public String getLongestWord() {
+        return longestWord;
+    }
+
+    /**
+     * Gets the number of counted words of each length (index = length). Exact.
+     */
+    public long[] getWordLengthCounts() {
+        return Arrays.copyOf(lengthCounts, longestWord.length() + 1);
+    }
+
+    /**
+     * Gets the most frequent tracked word.
+     */
+    public String getMostFrequentWord() {
+        List<Map.Entry<String, Integer>> top = getTopNWords(1);
+        return top.isEmpty() ? "" : top.get(0).getKey();
+    }
+
+    /**
+     * Gets the estimated frequency of the most frequent word.
+     */
+    public int getMostFrequentWordCount() {
+        List<Map.Entry<String, Integer>> top = getTopNWords(1);
+        return top.isEmpty() ? 0 : top.get(0).getValue();
+    }
+
+    /**
+     * Returns up to n of the tracked top words with their estimated counts,
+     * sorted by count descending, then alphabetically. Words occurring more than
+     * total / topWordCapacity times are always included.
+     */
+    public List<Map.Entry<String, Integer>> getTopNWords(int n) {
+        List<Map.Entry<String, Integer>> tracked = trackedWords();
+        Collections.sort(tracked, new Comparator<Map.Entry<String, Integer>>() {
+            public int compare(Map.Entry<String, Integer> a, Map.Entry<String, Integer> b) {
+                int byCount = b.getValue().compareTo(a.getValue());
+                if (byCount != 0) {
+                    return byCount;
+                }
+                return a.getKey().compareTo(b.getKey());
+            }
+        });
+        return new ArrayList<Map.Entry<String, Integer>>(tracked.subList(0, Math.max(0, Math.min(n, tracked.size()))));
+    }
+
+    /**
+     * N-grams are not counted in approximate mode.
+     */
+    public int getNGramSize() {
+        return 0;
+    }
+
+    /**
+     * N-grams are not counted in approximate mode, so this is always empty.
+     */
+    public List<Map.Entry<String, Integer>> getTopNGrams(int n) {
+        return new ArrayList<Map.Entry<String, Integer>>();
+    }
+
+    /**
+     * Returns the tracked top words starting with the prefix, sorted alphabetically.
+     * Words that are not frequent enough to be tracked are not listed.
+     */
+    public List<String> getWordsStartingWith(String prefix) {
+        List<Map.Entry<String, Integer>> matches = getWordCountsStartingWith(prefix);
+        List<String> words = new ArrayList<String>(matches.size());
+        for (int i = 0; i < matches.size(); i++) {
+            words.add(matches.get(i).getKey());
+        }
+        return words;
+    }
+
+    /**
+     * Returns the tracked top words starting with the prefix and their estimated
+     * counts, sorted alphabetically.
+     */
+    public List<Map.Entry<String, Integer>> getWordCountsStartingWith(String prefix) {
+        String lowerPrefix = prefix.toLowerCase();
+        List<Map.Entry<String, Integer>> matches = new ArrayList<Map.Entry<String, Integer>>();
+        List<Map.Entry<String, Integer>> tracked = trackedWords();
+        for (int i = 0; i < tracked.size(); i++) {
+            if (tracked.get(i).getKey().startsWith(lowerPrefix)) {
+                matches.add(tracked.get(i));
+            }
+        }
+        Collections.sort(matches, new Comparator<Map.Entry<String, Integer>>() {
+            public int compare(Map.Entry<String, Integer> a, Map.Entry<String, Integer> b) {
+                return a.getKey().compareTo(b.getKey());
+            }
+        });
+        return matches;
+    }
+
+    /**
+     * Gets the estimated frequency of a word. Never less than the true count.
+     */
+    public int getWordCount(String word) {
+        String lowerWord = word.toLowerCase();
+        long hash = hash(lowerWord);
+        long estimate = sketch.estimate(hash);
+        // Space-Saving also overestimates, so the smaller of the two is closer
+        int entry = heavyHitters.find(lowerWord, (int) hash);
+        if (entry >= 0) {
+            estimate = Math.min(estimate, heavyHitters.count(entry));
+        }
+        return (int) Math.min(estimate, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the largest amount by which a frequency estimate exceeds the true
+     * count, with probability 1 - delta.
+     */
+    public long getFrequencyErrorBound() {
+        return (long) Math.ceil(epsilon * totalWords);
+    }
+
+    /**
+     * Gets a read-only view of the stop words.
+     */
+    public Set<String> getStopWordsView() {
+        return stopWordFilter.getStopWords();
+    }
+
+    /**
+     * Tracked words with the smaller of their Space-Saving and sketch estimates.
+     */
+    private List<Map.Entry<String, Integer>> trackedWords() {
+        List<Map.Entry<String, Integer>> tracked = new ArrayList<Map.Entry<String, Integer>>(heavyHitters.size());
+        for (int entry = 0; entry < heavyHitters.size(); entry++) {
+            String word = heavyHitters.word(entry);
+            long count = Math.min(heavyHitters.count(entry), sketch.estimate(hash(word)));
+            tracked.add(new AbstractMap.SimpleImmutableEntry<String, Integer>(word,
+                    (int) Math.min(count, Integer.MAX_VALUE)));
+        }
+        return tracked;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the characters, finished with a MurmurHash3 mix so
+     * that every bit depends on the whole word.
+     */
+    static long hash(char[] buffer, int offset, int length) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < length; i++) {
+            h = (h ^ buffer[offset + i]) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    static long hash(String word) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < word.length(); i++) {
+            h = (h ^ word.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+}
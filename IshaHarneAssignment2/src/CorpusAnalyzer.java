@@ -0,0 +1,283 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Analyzes every file under a directory as one corpus.
+ * Files are counted in parallel on a fixed-size thread pool, each into its own
+ * WordCounter, which is kept as that document's term frequencies. The per-file
+ * counters are merged, in path order, into one counter for the whole corpus.
+ */
+public class CorpusAnalyzer {
+    private String rootPath;
+    private int threadCount;
+    private StopWordFilter stopWordFilter;
+    private int nGramSize;
+    private Charset charset;
+    // Per-document counters keyed by file path, in sorted path order
+    private Map<String, WordCounter> documents;
+    private WordCounter corpusCounter;
+    private StatisticsReport statisticsReport;
+
+    public CorpusAnalyzer(String rootPath) {
+        this(rootPath, Runtime.getRuntime().availableProcessors());
+    }
+
+    public CorpusAnalyzer(String rootPath, int threadCount) {
+        this(rootPath, threadCount, new WordCounter().getStopWordFilter());
+    }
+
+    /**
+     * Creates a corpus analyzer that filters words with the given stop word filter.
+     */
+    public CorpusAnalyzer(String rootPath, int threadCount, StopWordFilter stopWordFilter) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+        this.rootPath = rootPath;
+        this.threadCount = threadCount;
+        this.stopWordFilter = stopWordFilter;
+        this.charset = Charset.defaultCharset();
+        this.documents = new LinkedHashMap<String, WordCounter>();
+    }
+
+    /**
+     * Walks the directory tree, counts every regular file and merges the results.
+     * Each file is read and counted exactly as TextAnalyzer.analyze() would.
+     */
+    public void analyze() throws IOException {
+        List<String> files = findFiles(rootPath);
+
+        // Counters created from one template share its stop word filter
+        final WordCounter template = new WordCounter(stopWordFilter);
+        final int documentNGramSize = nGramSize;
+        final Charset documentCharset = charset;
+        WordCounter corpus = new WordCounter(template);
+        corpus.setNGramSize(nGramSize);
+        Map<String, WordCounter> counted = new LinkedHashMap<String, WordCounter>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, Math.max(1, files.size())));
+        List<Future<WordCounter>> results = new ArrayList<Future<WordCounter>>();
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                final String file = files.get(i);
+                results.add(executor.submit(new Callable<WordCounter>() {
+                    public WordCounter call() throws IOException {
+                        WordCounter document = new WordCounter(template);
+                        document.setNGramSize(documentNGramSize);
+                        TextAnalyzer.countFile(new TextReader(file, documentCharset), document);
+                        return document;
+                    }
+                }));
+            }
+
+            // Merge in path order while later files are still being counted
+            for (int i = 0; i < results.size(); i++) {
+                WordCounter document = results.get(i).get();
+                corpus.merge(document);
+                counted.put(files.get(i), document);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while analyzing " + rootPath, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to analyze " + rootPath, cause);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Tracking top words during the merges would rescan the corpus after every file
+        corpus.setLiveTopWords(10);
+        this.corpusCounter = corpus;
+        this.documents = counted;
+        this.statisticsReport = new StatisticsReport(corpus, rootPath);
+    }
+
+    /**
+     * Also counts n-grams of n consecutive words (2 to 4, or 0 for none) in the
+     * next analysis. N-grams never span two documents.
+     */
+    public void setNGramSize(int n) {
+        if (n != 0 && (n < 2 || n > 4)) {
+            throw new IllegalArgumentException("N-gram size must be 0 or between 2 and 4");
+        }
+        this.nGramSize = n;
+    }
+
+    /**
+     * Decodes the files of the next analysis with the given charset instead of
+     * the platform charset. Files starting with a byte order mark still use
+     * the charset it names.
+     */
+    public void setCharset(Charset charset) {
+        if (charset == null) {
+            throw new IllegalArgumentException("Charset is required");
+        }
+        this.charset = charset;
+    }
+
+    /**
+     * Lists the regular files under the root directory in sorted order.
+     */
+    static List<String> findFiles(String rootPath) throws IOException {
+        Path root = Paths.get(rootPath);
+        if (!Files.isDirectory(root)) {
+            throw new IOException("Not a directory: " + rootPath);
+        }
+        List<String> files = new ArrayList<String>();
+        Stream<Path> paths = Files.walk(root);
+        try {
+            Iterator<Path> iterator = paths.iterator();
+            while (iterator.hasNext()) {
+                Path path = iterator.next();
+                if (Files.isRegularFile(path)) {
+                    files.add(path.toString());
+                }
+            }
+        } finally {
+            paths.close();
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Exports the aggregated report for the whole corpus.
+     */
+    public void exportReport(String outputFilePath) throws IOException {
+        getStatisticsReport().exportReport(outputFilePath);
+    }
+
+    /**
+     * Prints the aggregated report for the whole corpus.
+     */
+    public void printReport() {
+        getStatisticsReport().printReport();
+    }
+
+    /**
+     * Writes one report per document into the output directory, which mirrors
+     * the directory tree under the root: the report for root/a/b.txt is written
+     * to a/b.txt.report.txt, so no two documents share a report. The reports
+     * are streamed to their files concurrently.
+     */
+    public void exportDocumentReports(String outputDirectory) throws IOException {
+        checkAnalyzed();
+        File directory = new File(outputDirectory);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory: " + outputDirectory);
+        }
+        Path root = Paths.get(rootPath);
+        Map<String, StatisticsReport> reports = new LinkedHashMap<String, StatisticsReport>();
+        for (Map.Entry<String, WordCounter> document : documents.entrySet()) {
+            String relative = root.relativize(Paths.get(document.getKey())).toString();
+            File report = new File(directory, relative + ".report.txt");
+            File parent = report.getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Cannot create directory: " + parent.getPath());
+            }
+            reports.put(report.getPath(), new StatisticsReport(document.getValue(), document.getKey()));
+        }
+        new ReportExporter(threadCount).exportAll(reports);
+        System.out.println(reports.size() + " document reports exported to: " + outputDirectory);
+    }
+
+    /**
+     * Gets the report for a single document.
+     */
+    public StatisticsReport getDocumentReport(String filePath) {
+        return new StatisticsReport(getDocumentCounter(filePath), filePath);
+    }
+
+    /**
+     * Gets the counter holding one document's term frequencies.
+     */
+    public WordCounter getDocumentCounter(String filePath) {
+        checkAnalyzed();
+        WordCounter document = documents.get(filePath);
+        if (document == null) {
+            throw new IllegalArgumentException("Not part of the corpus: " + filePath);
+        }
+        return document;
+    }
+
+    /**
+     * Gets how often a word occurs in one document.
+     */
+    public int getTermFrequency(String filePath, String word) {
+        return getDocumentCounter(filePath).getWordCount(word);
+    }
+
+    /**
+     * Gets the number of documents containing the word at least once.
+     */
+    public int getDocumentFrequency(String word) {
+        checkAnalyzed();
+        int count = 0;
+        for (WordCounter document : documents.values()) {
+            if (document.getWordCount(word) > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the paths of the analyzed documents, in sorted order.
+     */
+    public List<String> getDocumentPaths() {
+        checkAnalyzed();
+        return new ArrayList<String>(documents.keySet());
+    }
+
+    /**
+     * Gets the counter with the merged statistics of the whole corpus.
+     */
+    public WordCounter getWordCounter() {
+        checkAnalyzed();
+        return corpusCounter;
+    }
+
+    /**
+     * Gets the aggregated report for the whole corpus.
+     */
+    public StatisticsReport getStatisticsReport() {
+        checkAnalyzed();
+        return statisticsReport;
+    }
+
+    /**
+     * Gets the root directory.
+     */
+    public String getRootPath() {
+        return rootPath;
+    }
+
+    private void checkAnalyzed() {
+        if (corpusCounter == null) {
+            throw new IllegalStateException("Analysis has not been performed. Call analyze() first.");
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Count-Min Sketch: estimates word frequencies in fixed memory.
+ * An estimate never undercounts, and with probability at least 1 - delta it
+ * overcounts by at most epsilon times the total number of words added.
+ *
+ * Uses conservative update: each add raises only the cells that hold the
+ * current minimum, which keeps the same guarantee with smaller errors.
+ */
+class CountMinSketch {
+    private final int depth;
+    private final int mask;
+    // depth rows of width cells, stored row after row
+    private final long[] cells;
+
+    CountMinSketch(double epsilon, double delta) {
+        if (epsilon <= 0 || epsilon >= 1) {
+            throw new IllegalArgumentException("Epsilon must be between 0 and 1");
+        }
+        if (delta <= 0 || delta >= 1) {
+            throw new IllegalArgumentException("Delta must be between 0 and 1");
+        }
+        // width >= e / epsilon, rounded up to a power of two so a mask picks the column
+        int width = 1;
+        while (width < Math.E / epsilon) {
+            width = width * 2;
+        }
+        this.depth = (int) Math.ceil(Math.log(1 / delta));
+        this.mask = width - 1;
+        this.cells = new long[depth * width];
+    }
+
+    /**
+     * Adds one occurrence of the word with the given 64-bit hash and returns
+     * its new estimated count.
+     */
+    long add(long hash) {
+        long estimate = estimate(hash) + 1;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int row = 0; row < depth; row++) {
+            int cell = row * (mask + 1) + ((h1 + row * h2) & mask);
+            if (cells[cell] < estimate) {
+                cells[cell] = estimate;
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * Gets the estimated count of the word with the given 64-bit hash.
+     */
+    long estimate(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long minimum = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            long count = cells[row * (mask + 1) + ((h1 + row * h2) & mask)];
+            if (count < minimum) {
+                minimum = count;
+            }
+        }
+        return minimum;
+    }
+
+    int width() {
+        return mask + 1;
+    }
+
+    int depth() {
+        return depth;
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * HyperLogLog: estimates the number of distinct words in fixed memory.
+ * Uses 2^precision one-byte registers; the relative standard error is about
+ * 1.04 / sqrt(2^precision), e.g. 0.8% for precision 14 (16 KB).
+ */
+class HyperLogLog {
+    private final int precision;
+    private final byte[] registers;
+
+    HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("Precision must be between 4 and 18");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Records a word by its 64-bit hash.
+     */
+    void add(long hash) {
+        int register = (int) (hash >>> (64 - precision));
+        // Position of the first set bit in the remaining bits, capped for an all-zero tail
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), 64 - precision) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+
+    /**
+     * Estimates the number of distinct hashes added.
+     */
+    long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < m; i++) {
+            sum += 1.0 / (1L << registers[i]);
+            if (registers[i] == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        // Linear counting is more accurate while many registers are still empty
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Bias correction for m registers: the published constants for 16, 32
+     * and 64 registers, where the asymptotic formula does not hold.
+     */
+    static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    int precision() {
+        return precision;
+    }
+}
@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds a positional inverted index over the words of many documents, to be
+ * saved with InvertedIndexFile.write and queried through InvertedIndexFile.open.
+ * Words are tokenized and filtered exactly like WordCounter does. A word's
+ * position is its index among the counted words of its document, so stop words
+ * and short words take no positions.
+ *
+ * Documents are added one at a time and numbered in the order added. While
+ * building, the postings of each term are appended to a byte array of its own
+ * as varint pairs: a document delta (0 for the same document as the previous
+ * occurrence), then the position, relative to the previous position within the
+ * same document. Each occurrence usually takes two bytes.
+ */
+public class InvertedIndexBuilder implements TokenSink {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final StopWordFilter stopWordFilter;
+    private final TextTokenizer tokenizer;
+
+    // Term -> id, with the term's total number of occurrences as its count
+    private final WordTable terms;
+    // Per term id
+    private byte[][] postings;
+    private int[] postingLengths;
+    private int[] lastDocuments;
+    private int[] lastPositions;
+    private int[] documentFrequencies;
+
+    private final List<String> documentNames;
+    private int[] documentLengths;
+    private int currentDocument;
+    private int position;
+
+    public InvertedIndexBuilder() {
+        this(new WordCounter().getStopWordFilter());
+    }
+
+    public InvertedIndexBuilder(StopWordFilter stopWordFilter) {
+        this.stopWordFilter = stopWordFilter;
+        this.tokenizer = new TextTokenizer();
+        this.terms = new WordTable();
+        this.postings = new byte[1024][];
+        this.postingLengths = new int[1024];
+        this.lastDocuments = new int[1024];
+        this.lastPositions = new int[1024];
+        this.documentFrequencies = new int[1024];
+        this.documentNames = new ArrayList<String>();
+        this.documentLengths = new int[64];
+        this.currentDocument = -1;
+    }
+
+    /**
+     * Starts a new document; words passed to acceptToken from now on belong to
+     * it. Returns the document's number.
+     */
+    public int startDocument(String name) {
+        if (currentDocument >= 0) {
+            documentLengths[currentDocument] = position;
+        }
+        currentDocument = documentNames.size();
+        documentNames.add(name);
+        if (currentDocument == documentLengths.length) {
+            documentLengths = Arrays.copyOf(documentLengths, documentLengths.length * 2);
+        }
+        position = 0;
+        return currentDocument;
+    }
+
+    /**
+     * Indexes raw text as one document.
+     */
+    public int addDocument(String name, String rawText) {
+        int document = startDocument(name);
+        tokenizer.tokenize(rawText, this);
+        return document;
+    }
+
+    /**
+     * Indexes a file as one document named by its path. When the platform
+     * charset is UTF-8 the file is read through memory-mapped chunks;
+     * otherwise it is decoded chunk by chunk with the platform charset.
+     */
+    public int addFile(String filePath) throws IOException {
+        int document = startDocument(filePath);
+        if (Charset.defaultCharset().equals(UTF_8)) {
+            new MappedTextReader(filePath).tokenize(this);
+        } else {
+            new TextReader(filePath).tokenize(this);
+        }
+        return document;
+    }
+
+    /**
+     * Filters one word produced by TextTokenizer and records its position in
+     * the current document.
+     */
+    public void acceptToken(char[] buffer, int offset, int length) {
+        if (currentDocument < 0) {
+            throw new IllegalStateException("Call startDocument() before indexing words.");
+        }
+        if (!stopWordFilter.accepts(buffer, offset, length)) {
+            return;
+        }
+        int id = terms.add(buffer, offset, length, 1);
+        if (id == postingLengths.length) {
+            growTerms();
+        }
+        if (postings[id] == null) {
+            postings[id] = new byte[8];
+            lastDocuments[id] = -1;
+        }
+        if (lastDocuments[id] != currentDocument) {
+            append(id, currentDocument - lastDocuments[id]);
+            append(id, position);
+            lastDocuments[id] = currentDocument;
+            documentFrequencies[id]++;
+        } else {
+            append(id, 0);
+            append(id, position - lastPositions[id]);
+        }
+        lastPositions[id] = position;
+        position++;
+    }
+
+    public int getDocumentCount() {
+        return documentNames.size();
+    }
+
+    public int getTermCount() {
+        return terms.size();
+    }
+
+    StopWordFilter getStopWordFilter() {
+        return stopWordFilter;
+    }
+
+    WordTable getTerms() {
+        return terms;
+    }
+
+    String getDocumentName(int document) {
+        return documentNames.get(document);
+    }
+
+    /**
+     * Number of indexed words in the document.
+     */
+    int getDocumentLength(int document) {
+        return document == currentDocument ? position : documentLengths[document];
+    }
+
+    int getDocumentFrequency(int termId) {
+        return documentFrequencies[termId];
+    }
+
+    /**
+     * Gets the in-memory postings of a term; only the first
+     * getPostingsLength(termId) bytes are used.
+     */
+    byte[] getPostings(int termId) {
+        return postings[termId];
+    }
+
+    int getPostingsLength(int termId) {
+        return postingLengths[termId];
+    }
+
+    private void append(int id, int value) {
+        byte[] bytes = postings[id];
+        int length = postingLengths[id];
+        if (length + 5 > bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            postings[id] = bytes;
+        }
+        while ((value & ~0x7F) != 0) {
+            bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[length++] = (byte) value;
+        postingLengths[id] = length;
+    }
+
+    private void growTerms() {
+        int capacity = postingLengths.length * 2;
+        postings = Arrays.copyOf(postings, capacity);
+        postingLengths = Arrays.copyOf(postingLengths, capacity);
+        lastDocuments = Arrays.copyOf(lastDocuments, capacity);
+        lastPositions = Arrays.copyOf(lastPositions, capacity);
+        documentFrequencies = Arrays.copyOf(documentFrequencies, capacity);
+    }
+}
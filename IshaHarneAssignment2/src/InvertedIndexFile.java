@@ -0,0 +1,728 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memory-mapped segment file holding a positional inverted index written from
+ * an InvertedIndexBuilder. Answers which documents contain a word and where,
+ * which documents contain all words of a query, and where a phrase occurs.
+ *
+ * The postings of each term list its documents in increasing order. For each
+ * document they store the gap from the previous document, the number of
+ * occurrences and the occurrence positions as gaps, all as varints. Documents are
+ * grouped in blocks of 64. A skip table in front of the postings gives each
+ * block's last document and byte length, so a cursor looking for a later
+ * document jumps over whole blocks without decoding them. Conjunctive and
+ * phrase queries advance the cursor of the rarest term and move the others to
+ * the candidate document with these skips.
+ *
+ * Query text is tokenized and filtered with the stop words saved in the
+ * segment. A phrase matches where its counted words are at consecutive
+ * positions, so stop words inside a phrase are skipped, as they are in the
+ * documents.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   header      magic, version, skip interval, document count, term count,
+ *               total positions, then the offsets of the stop words,
+ *               document table and term table
+ *   stop words  minimum word length, word count, words
+ *   documents   per document: name, number of indexed words
+ *   doc table   int offset of every document
+ *   postings    per term: skip table length, per block (last document gap,
+ *               byte length), then per document (gap, frequency, position gaps)
+ *   terms       per term, sorted: word, document frequency, total
+ *               occurrences, postings offset
+ *   term table  int offset of every term, for binary search
+ * </pre>
+ * The whole file is mapped at once, so it is limited to 2 GB.
+ */
+public class InvertedIndexFile {
+    private static final int MAGIC = 0x49494458; // "IIDX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+    private static final int SKIP_INTERVAL = 64;
+    private static final int NO_MORE_DOCUMENTS = Integer.MAX_VALUE;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private String filePath;
+    private ByteBuffer buffer;
+    private int documentCount;
+    private int termCount;
+    private long totalPositions;
+    private int documentTableOffset;
+    private int termTableOffset;
+    private StopWordFilter stopWordFilter;
+
+    private InvertedIndexFile(String filePath, ByteBuffer buffer) throws IOException {
+        this.filePath = filePath;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an inverted index file: " + filePath);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported inverted index version " + buffer.getInt(4) + " in " + filePath);
+        }
+        if (buffer.getInt(8) != SKIP_INTERVAL) {
+            throw new IOException("Unsupported skip interval in " + filePath);
+        }
+        this.documentCount = buffer.getInt(12);
+        this.termCount = buffer.getInt(16);
+        this.totalPositions = buffer.getLong(20);
+        int stopWordsOffset = buffer.getInt(28);
+        this.documentTableOffset = buffer.getInt(32);
+        this.termTableOffset = buffer.getInt(36);
+        checkLayout(stopWordsOffset);
+
+        Reader stops = new Reader(stopWordsOffset);
+        int minWordLength = stops.readVarInt();
+        List<String> stopWords = new ArrayList<String>();
+        for (int i = stops.readVarInt(); i > 0; i--) {
+            stopWords.add(stops.readString());
+        }
+        this.stopWordFilter = new StopWordFilter(stopWords, minWordLength);
+    }
+
+    /**
+     * Checks that the sections follow each other as write() lays them out and
+     * that the document and term tables point into their sections, so a
+     * truncated or corrupt file fails here rather than on a later query.
+     */
+    private void checkLayout(int stopWordsOffset) throws IOException {
+        long documentsEnd = documentTableOffset + 4L * documentCount;
+        boolean valid = documentCount >= 0 && termCount >= 0
+                && stopWordsOffset == HEADER_SIZE && documentTableOffset > stopWordsOffset
+                && termTableOffset >= documentsEnd
+                && buffer.capacity() == termTableOffset + 4L * termCount;
+        if (valid && documentCount > 0) {
+            // Document offsets are ascending, after the stop words
+            valid = buffer.getInt(documentTableOffset) > stopWordsOffset
+                    && buffer.getInt(documentTableOffset + 4 * (documentCount - 1)) < documentTableOffset;
+        }
+        if (valid && termCount > 0) {
+            // Term offsets are ascending, after the postings
+            valid = buffer.getInt(termTableOffset) >= documentsEnd
+                    && buffer.getInt(termTableOffset + 4 * (termCount - 1)) < termTableOffset;
+        }
+        if (!valid) {
+            throw new IOException("Corrupt inverted index file: " + filePath);
+        }
+    }
+
+    /**
+     * Writes the documents and postings of a builder to a segment file.
+     */
+    public static void write(InvertedIndexBuilder builder, String filePath) throws IOException {
+        WordTable terms = builder.getTerms();
+        int size = terms.size();
+        String[] sorted = new String[size];
+        for (int id = 0; id < size; id++) {
+            sorted[id] = terms.word(id);
+        }
+        Arrays.sort(sorted);
+
+        int stopWordsOffset;
+        int documentTableOffset;
+        int termTableOffset;
+        int documentCount = builder.getDocumentCount();
+        long totalPositions = 0;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)));
+        try {
+            // Placeholder header, filled in once the section offsets are known
+            out.write(new byte[HEADER_SIZE]);
+
+            stopWordsOffset = out.size();
+            StopWordFilter filter = builder.getStopWordFilter();
+            List<String> stopWords = new ArrayList<String>(filter.getStopWords());
+            Collections.sort(stopWords);
+            writeVarInt(out, filter.getMinWordLength());
+            writeVarInt(out, stopWords.size());
+            for (int i = 0; i < stopWords.size(); i++) {
+                writeString(out, stopWords.get(i));
+            }
+
+            int[] documentOffsets = new int[documentCount];
+            for (int document = 0; document < documentCount; document++) {
+                documentOffsets[document] = out.size();
+                writeString(out, builder.getDocumentName(document));
+                writeVarInt(out, builder.getDocumentLength(document));
+                totalPositions += builder.getDocumentLength(document);
+            }
+            documentTableOffset = out.size();
+            for (int document = 0; document < documentCount; document++) {
+                out.writeInt(documentOffsets[document]);
+            }
+
+            int[] postingOffsets = new int[size];
+            PostingsEncoder encoder = new PostingsEncoder();
+            for (int i = 0; i < size; i++) {
+                int id = terms.find(sorted[i]);
+                postingOffsets[i] = out.size();
+                encoder.encode(builder.getPostings(id), builder.getPostingsLength(id), out);
+                checkSize(out, filePath);
+            }
+
+            int[] termOffsets = new int[size];
+            for (int i = 0; i < size; i++) {
+                int id = terms.find(sorted[i]);
+                termOffsets[i] = out.size();
+                writeString(out, sorted[i]);
+                writeVarInt(out, builder.getDocumentFrequency(id));
+                writeVarInt(out, terms.count(id));
+                writeVarInt(out, postingOffsets[i]);
+            }
+            termTableOffset = out.size();
+            for (int i = 0; i < size; i++) {
+                out.writeInt(termOffsets[i]);
+            }
+            checkSize(out, filePath);
+        } finally {
+            out.close();
+        }
+
+        RandomAccessFile file = new RandomAccessFile(filePath, "rw");
+        try {
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            file.writeInt(SKIP_INTERVAL);
+            file.writeInt(documentCount);
+            file.writeInt(size);
+            file.writeLong(totalPositions);
+            file.writeInt(stopWordsOffset);
+            file.writeInt(documentTableOffset);
+            file.writeInt(termTableOffset);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Maps a segment file written by write() for querying.
+     * The mapping stays valid after this returns; it is released when the
+     * returned object is garbage collected.
+     */
+    public static InvertedIndexFile open(String filePath) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filePath, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Inverted index file is larger than 2 GB: " + filePath);
+            }
+            return new InvertedIndexFile(filePath, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Gets the number of documents containing the word.
+     */
+    public int getDocumentFrequency(String word) {
+        int entry = findTerm(word.toLowerCase());
+        if (entry < 0) {
+            return 0;
+        }
+        Reader reader = new Reader(entry);
+        reader.skipString();
+        return reader.readVarInt();
+    }
+
+    /**
+     * Returns the positions of the word in every document containing it, in
+     * document order. A position counts the indexed words before it in the document.
+     */
+    public Map<String, int[]> getPositions(String word) {
+        if (queryTerms(word).size() != 1) {
+            return new LinkedHashMap<String, int[]>();
+        }
+        return getPhraseMatches(word);
+    }
+
+    /**
+     * Returns the documents containing every counted word of the query, in document order.
+     */
+    public List<String> getDocumentsContainingAll(String query) {
+        List<String> matches = new ArrayList<String>();
+        PostingsCursor[] cursors = cursors(queryTerms(query));
+        if (cursors == null) {
+            return matches;
+        }
+        PostingsCursor[] byFrequency = byFrequency(cursors);
+        int document = nextMatch(byFrequency, 0);
+        while (document != NO_MORE_DOCUMENTS) {
+            matches.add(getDocumentName(document));
+            document = nextMatch(byFrequency, document + 1);
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the start positions of the phrase in every document containing
+     * it, in document order.
+     */
+    public Map<String, int[]> getPhraseMatches(String phrase) {
+        Map<String, int[]> matches = new LinkedHashMap<String, int[]>();
+        PostingsCursor[] cursors = cursors(queryTerms(phrase));
+        if (cursors == null) {
+            return matches;
+        }
+        PostingsCursor[] byFrequency = byFrequency(cursors);
+        int[][] positions = new int[cursors.length][];
+        int document = nextMatch(byFrequency, 0);
+        while (document != NO_MORE_DOCUMENTS) {
+            for (int i = 0; i < cursors.length; i++) {
+                positions[i] = cursors[i].positions();
+            }
+            int[] starts = phraseStarts(positions);
+            if (starts.length > 0) {
+                matches.put(getDocumentName(document), starts);
+            }
+            document = nextMatch(byFrequency, document + 1);
+        }
+        return matches;
+    }
+
+    /**
+     * Positions p of the first word such that word i occurs at p + i for every i.
+     */
+    private static int[] phraseStarts(int[][] positions) {
+        int[] starts = new int[positions[0].length];
+        int count = 0;
+        for (int j = 0; j < positions[0].length; j++) {
+            int start = positions[0][j];
+            boolean matched = true;
+            for (int i = 1; i < positions.length && matched; i++) {
+                matched = Arrays.binarySearch(positions[i], start + i) >= 0;
+            }
+            if (matched) {
+                starts[count++] = start;
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    /**
+     * Moves the cursors, rarest first, to the first document at or after the
+     * target that all of them contain.
+     */
+    private static int nextMatch(PostingsCursor[] byFrequency, int target) {
+        int document = byFrequency[0].advance(target);
+        while (document != NO_MORE_DOCUMENTS) {
+            int i = 1;
+            while (i < byFrequency.length) {
+                int other = byFrequency[i].advance(document);
+                if (other != document) {
+                    break;
+                }
+                i++;
+            }
+            if (i == byFrequency.length) {
+                return document;
+            }
+            int ahead = byFrequency[i].document;
+            if (ahead == NO_MORE_DOCUMENTS) {
+                return NO_MORE_DOCUMENTS;
+            }
+            document = byFrequency[0].advance(ahead);
+        }
+        return NO_MORE_DOCUMENTS;
+    }
+
+    private static PostingsCursor[] byFrequency(PostingsCursor[] cursors) {
+        PostingsCursor[] sorted = cursors.clone();
+        // Insertion sort; queries have a handful of words
+        for (int i = 1; i < sorted.length; i++) {
+            PostingsCursor cursor = sorted[i];
+            int j = i - 1;
+            while (j >= 0 && sorted[j].documentFrequency > cursor.documentFrequency) {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = cursor;
+        }
+        return sorted;
+    }
+
+    /**
+     * Opens a cursor for each term, or returns null if there are no terms or
+     * one of them is not in the index.
+     */
+    private PostingsCursor[] cursors(List<String> terms) {
+        if (terms.isEmpty()) {
+            return null;
+        }
+        PostingsCursor[] cursors = new PostingsCursor[terms.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            int entry = findTerm(terms.get(i));
+            if (entry < 0) {
+                return null;
+            }
+            cursors[i] = new PostingsCursor(entry);
+        }
+        return cursors;
+    }
+
+    /**
+     * Tokenizes and filters query text the way the documents were indexed.
+     */
+    private List<String> queryTerms(String text) {
+        final List<String> terms = new ArrayList<String>();
+        new TextTokenizer().tokenize(text, new TokenSink() {
+            public void acceptToken(char[] buffer, int offset, int length) {
+                if (stopWordFilter.accepts(buffer, offset, length)) {
+                    terms.add(new String(buffer, offset, length));
+                }
+            }
+        });
+        return terms;
+    }
+
+    /**
+     * Binary searches the term table; returns the term's entry offset or -1.
+     */
+    private int findTerm(String term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = buffer.getInt(termTableOffset + 4 * middle);
+            int comparison = new Reader(entry).readString().compareTo(term);
+            if (comparison == 0) {
+                return entry;
+            } else if (comparison < 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the name (for files, the path) of a document by its number.
+     */
+    public String getDocumentName(int document) {
+        return new Reader(buffer.getInt(documentTableOffset + 4 * document)).readString();
+    }
+
+    /**
+     * Gets the number of indexed words in a document.
+     */
+    public int getDocumentLength(int document) {
+        Reader reader = new Reader(buffer.getInt(documentTableOffset + 4 * document));
+        reader.skipString();
+        return reader.readVarInt();
+    }
+
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    public int getTermCount() {
+        return termCount;
+    }
+
+    /**
+     * Gets the number of indexed word occurrences in all documents.
+     */
+    public long getTotalPositions() {
+        return totalPositions;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    private static void checkSize(DataOutputStream out, String filePath) throws IOException {
+        // DataOutputStream.size() stops counting at Integer.MAX_VALUE
+        if (out.size() == Integer.MAX_VALUE) {
+            throw new IOException("Inverted index would be larger than 2 GB: " + filePath);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Re-encodes a term's in-memory postings from InvertedIndexBuilder into the
+     * blocked segment format. Reuses its buffers from term to term.
+     */
+    private static class PostingsEncoder {
+        private final VarIntBuffer skips = new VarIntBuffer();
+        private final VarIntBuffer data = new VarIntBuffer();
+        private int[] positions = new int[64];
+        private int frequency;
+        private int document;
+        private int previousDocument;
+        private int previousBlockLast;
+        private int blockStart;
+        private int documentsInBlock;
+        private int read;
+
+        void encode(byte[] postings, int length, DataOutputStream out) throws IOException {
+            skips.clear();
+            data.clear();
+            frequency = 0;
+            document = -1;
+            previousDocument = -1;
+            previousBlockLast = -1;
+            blockStart = 0;
+            documentsInBlock = 0;
+
+            read = 0;
+            while (read < length) {
+                int gap = readVarInt(postings);
+                int position = readVarInt(postings);
+                if (gap > 0) {
+                    if (frequency > 0) {
+                        finishDocument();
+                    }
+                    document += gap;
+                    frequency = 0;
+                } else {
+                    position += positions[frequency - 1];
+                }
+                if (frequency == positions.length) {
+                    positions = Arrays.copyOf(positions, frequency * 2);
+                }
+                positions[frequency++] = position;
+            }
+            if (frequency > 0) {
+                finishDocument();
+            }
+            if (documentsInBlock > 0) {
+                finishBlock();
+            }
+
+            writeVarInt(out, skips.length);
+            skips.writeTo(out);
+            data.writeTo(out);
+        }
+
+        private void finishDocument() {
+            data.writeVarInt(document - previousDocument);
+            data.writeVarInt(frequency);
+            int previous = 0;
+            for (int i = 0; i < frequency; i++) {
+                data.writeVarInt(positions[i] - previous);
+                previous = positions[i];
+            }
+            previousDocument = document;
+            documentsInBlock++;
+            if (documentsInBlock == SKIP_INTERVAL) {
+                finishBlock();
+            }
+        }
+
+        private void finishBlock() {
+            skips.writeVarInt(previousDocument - previousBlockLast);
+            skips.writeVarInt(data.length - blockStart);
+            previousBlockLast = previousDocument;
+            blockStart = data.length;
+            documentsInBlock = 0;
+        }
+
+        private int readVarInt(byte[] postings) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings[read++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    /**
+     * Growable byte array of varints.
+     */
+    private static class VarIntBuffer {
+        private byte[] bytes = new byte[256];
+        private int length;
+
+        void writeVarInt(int value) {
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((value & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        void clear() {
+            length = 0;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.write(bytes, 0, length);
+        }
+    }
+
+    /**
+     * Reads varints and strings from the mapping with absolute gets, so several
+     * readers can be used on the shared buffer at once.
+     */
+    private class Reader {
+        int position;
+
+        Reader(int position) {
+            this.position = position;
+        }
+
+        int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        void skipVarInt() {
+            while (buffer.get(position++) < 0) {
+                // Continuation byte
+            }
+        }
+
+        String readString() {
+            int length = readVarInt();
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(position + i);
+            }
+            position += length;
+            return new String(bytes, UTF_8);
+        }
+
+        void skipString() {
+            int length = readVarInt();
+            position += length;
+        }
+    }
+
+    /**
+     * Walks one term's postings in document order. advance() uses the skip
+     * table to pass over blocks that end before the target document.
+     */
+    private class PostingsCursor extends Reader {
+        final int documentFrequency;
+        private final int blockCount;
+        private Reader skipReader;
+        private int blocksLoaded;
+        private int blockLastDocument;
+        private int blockEnd;
+        private int documentsRead;
+        int document;
+        private int frequency;
+        private int positionsStart;
+
+        PostingsCursor(int entry) {
+            super(0);
+            Reader term = new Reader(entry);
+            term.skipString();
+            this.documentFrequency = term.readVarInt();
+            term.readVarInt();
+            this.skipReader = new Reader(term.readVarInt());
+            int skipTableLength = skipReader.readVarInt();
+            this.position = skipReader.position + skipTableLength;
+            this.blockCount = (documentFrequency + SKIP_INTERVAL - 1) / SKIP_INTERVAL;
+            this.blockEnd = position;
+            this.blockLastDocument = -1;
+            this.document = -1;
+            loadNextBlock();
+        }
+
+        private void loadNextBlock() {
+            blockLastDocument += skipReader.readVarInt();
+            blockEnd += skipReader.readVarInt();
+            blocksLoaded++;
+        }
+
+        int nextDocument() {
+            if (documentsRead == documentFrequency) {
+                document = NO_MORE_DOCUMENTS;
+                return document;
+            }
+            if (position == blockEnd) {
+                loadNextBlock();
+            }
+            document += readVarInt();
+            frequency = readVarInt();
+            positionsStart = position;
+            for (int i = 0; i < frequency; i++) {
+                skipVarInt();
+            }
+            documentsRead++;
+            return document;
+        }
+
+        /**
+         * Moves to the first document at or after the target and returns it,
+         * or NO_MORE_DOCUMENTS.
+         */
+        int advance(int target) {
+            if (document >= target) {
+                return document;
+            }
+            while (blockLastDocument < target) {
+                if (blocksLoaded == blockCount) {
+                    document = NO_MORE_DOCUMENTS;
+                    documentsRead = documentFrequency;
+                    return document;
+                }
+                // Skip the rest of the current block without decoding it
+                position = blockEnd;
+                documentsRead = blocksLoaded * SKIP_INTERVAL;
+                document = blockLastDocument;
+                loadNextBlock();
+            }
+            while (document < target) {
+                nextDocument();
+            }
+            return document;
+        }
+
+        /**
+         * Decodes the positions of the word in the current document.
+         */
+        int[] positions() {
+            Reader reader = new Reader(positionsStart);
+            int[] result = new int[frequency];
+            int previous = 0;
+            for (int i = 0; i < frequency; i++) {
+                previous += reader.readVarInt();
+                result[i] = previous;
+            }
+            return result;
+        }
+    }
+}
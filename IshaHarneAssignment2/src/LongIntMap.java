@@ -0,0 +1,112 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long keys to positive int counts, without
+ * boxing. A slot whose count is 0 is empty, so counts must stay positive.
+ */
+class LongIntMap {
+    private long[] keys;
+    private int[] counts;
+    private int mask;
+    private int shift;
+    private int size;
+
+    LongIntMap() {
+        this(1024);
+    }
+
+    LongIntMap(int capacity) {
+        int slots = 16;
+        while (slots < capacity) {
+            slots = slots * 2;
+        }
+        allocate(slots);
+    }
+
+    /**
+     * Adds a positive delta to the key's count, inserting the key if it is new.
+     */
+    void add(long key, int delta) {
+        int slot = slot(key);
+        while (counts[slot] != 0) {
+            if (keys[slot] == key) {
+                counts[slot] += delta;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        counts[slot] = delta;
+        size++;
+        // Keep the load factor at or below one half
+        if (size * 2 > counts.length) {
+            rehash();
+        }
+    }
+
+    /**
+     * Gets the key's count, or 0 if it is absent.
+     */
+    int get(long key) {
+        int slot = slot(key);
+        while (counts[slot] != 0) {
+            if (keys[slot] == key) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Number of slots; iterate slots 0 to capacity() - 1 and skip those with count 0.
+     */
+    int capacity() {
+        return counts.length;
+    }
+
+    long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    int countAt(int slot) {
+        return counts[slot];
+    }
+
+    void clear() {
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    private int slot(long key) {
+        // Fibonacci hashing: the top bits of the product are well mixed
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private void allocate(int slots) {
+        keys = new long[slots];
+        counts = new int[slots];
+        mask = slots - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(slots);
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        allocate(counts.length * 2);
+        for (int i = 0; i < oldCounts.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                while (counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,303 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads large text files through memory-mapped chunks and counts words in parallel.
+ * The file is split into chunks that end on a whitespace byte, so no word spans
+ * two chunks. Worker threads map, tokenize and count one chunk at a time
+ * into their own WordCounter, and the partial counts are merged at the end.
+ * The tokenizer reads the mapped UTF-8 bytes in place, so the text is never
+ * decoded into the heap. A chunk is at most Integer.MAX_VALUE bytes, the most
+ * one mapping can hold, so a run of non-whitespace bytes longer than that is
+ * split where the mapping ends and counts as two words.
+ *
+ * countNewWords supports files that keep growing: it counts only the bytes
+ * after a previously returned offset, up to the last whitespace byte, so a word
+ * still being written is left for the next call.
+ */
+public class MappedTextReader {
+    private static final long DEFAULT_CHUNK_SIZE = 16L * 1024 * 1024;
+    private static final int BOUNDARY_SCAN_SIZE = 4096;
+
+    private String filePath;
+    private long chunkSize;
+    private int threadCount;
+    private int maxMappedSize = Integer.MAX_VALUE;
+
+    public MappedTextReader(String filePath) {
+        this(filePath, DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    public MappedTextReader(String filePath, long chunkSize, int threadCount) {
+        if (chunkSize < 1 || chunkSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + Integer.MAX_VALUE);
+        }
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+        this.filePath = filePath;
+        this.chunkSize = chunkSize;
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Counts every word in the file into the given WordCounter, replacing its
+     * previous contents. The file is read as UTF-8.
+     */
+    public void countWords(WordCounter wordCounter) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filePath, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            wordCounter.clear();
+            countRange(channel, findChunks(channel, 0, channel.size()), wordCounter);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Passes every word in the file to the sink, chunk by chunk in file order
+     * on the calling thread. For sinks whose partial results cannot be merged,
+     * such as ApproximateWordCounter.
+     */
+    public void tokenize(TokenSink sink) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filePath, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            List<long[]> chunks = findChunks(channel, 0, channel.size());
+            TextTokenizer tokenizer = new TextTokenizer();
+            for (int i = 0; i < chunks.size(); i++) {
+                long[] chunk = chunks.get(i);
+                tokenizer.tokenize(map(channel, chunk[0], chunk[1]), sink);
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Adds the words in the bytes appended since offset to the given WordCounter,
+     * keeping its previous contents. Counting stops just past the last whitespace
+     * byte, so a word that may still be growing is not counted yet. Returns the
+     * offset to pass on the next call; it is unchanged if no complete word was appended.
+     * offset must be 0 or a value returned by an earlier call on the same file.
+     */
+    public long countNewWords(WordCounter wordCounter, long offset) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filePath, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            if (offset < 0 || offset > size) {
+                throw new IllegalArgumentException("Offset " + offset + " is outside " + filePath
+                        + " (" + size + " bytes)");
+            }
+            long end = lastWhitespaceEnd(channel, offset, size);
+            if (end > offset) {
+                countRange(channel, findChunks(channel, offset, end), wordCounter);
+            }
+            return end;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Counts the chunks into the WordCounter on top of what it already holds.
+     * A single chunk, or any chunks while n-grams are counted, is counted in
+     * place; otherwise worker threads count into partial counters that are merged.
+     */
+    private void countRange(final FileChannel channel, final List<long[]> chunks, final WordCounter wordCounter)
+            throws IOException {
+        if (chunks.size() == 1 || wordCounter.getNGramSize() > 0) {
+            // N-grams span chunk boundaries, so they are counted in one pass
+            TextTokenizer tokenizer = new TextTokenizer();
+            for (int i = 0; i < chunks.size(); i++) {
+                long[] chunk = chunks.get(i);
+                tokenizer.tokenize(map(channel, chunk[0], chunk[1]), wordCounter);
+            }
+            return;
+        }
+        final AtomicInteger nextChunk = new AtomicInteger();
+
+        int workers = Math.min(threadCount, Math.max(1, chunks.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        List<Future<WordCounter>> results = new ArrayList<Future<WordCounter>>();
+        try {
+            for (int i = 0; i < workers; i++) {
+                results.add(executor.submit(new Callable<WordCounter>() {
+                    public WordCounter call() throws IOException {
+                        // Each worker keeps one partial counter, with the caller's stop
+                        // word filter, across all the chunks it takes
+                        WordCounter partial = new WordCounter(wordCounter);
+                        TextTokenizer tokenizer = new TextTokenizer();
+                        int index;
+                        while ((index = nextChunk.getAndIncrement()) < chunks.size()) {
+                            long[] chunk = chunks.get(index);
+                            tokenizer.tokenize(map(channel, chunk[0], chunk[1]), partial);
+                        }
+                        return partial;
+                    }
+                }));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                wordCounter.merge(results.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + filePath, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to read " + filePath, cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits the bytes [from, size) of the file into [start, end) ranges of roughly
+     * chunkSize bytes. Each range except the last is extended to just past the next
+     * whitespace byte, but never past the largest size that can be mapped. If there
+     * is no whitespace byte before that, the range ends after the last whitespace
+     * byte it holds instead, or, when it holds none, at the last character start
+     * within the limit.
+     */
+    List<long[]> findChunks(FileChannel channel, long from, long size) throws IOException {
+        List<long[]> chunks = new ArrayList<long[]>();
+        ByteBuffer scan = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+
+        long start = from;
+        while (start < size) {
+            long limit = Math.min(start + maxMappedSize, size);
+            long end = Math.min(start + chunkSize, limit);
+            if (end < size && !TextTokenizer.isRunBoundary(byteBefore(channel, end, scan))) {
+                end = nextWhitespaceEnd(channel, end, limit, scan);
+                if (end < size && !TextTokenizer.isRunBoundary(byteBefore(channel, end, scan))) {
+                    end = lastWhitespaceEnd(channel, start, limit);
+                    if (end == start) {
+                        end = characterStart(channel, start, limit, scan);
+                    }
+                }
+            }
+            chunks.add(new long[] {start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Steps back from position, which must be before the end of the file, over
+     * at most three UTF-8 continuation bytes, so that a run split there does not
+     * split a character. Stays at position if no character starts there.
+     */
+    private static long characterStart(FileChannel channel, long start, long position, ByteBuffer scan)
+            throws IOException {
+        for (long end = position; end > start && end > position - 4; end--) {
+            // The byte at end is the first byte of the next chunk
+            if ((byteBefore(channel, end + 1, scan) & 0xC0) != 0x80) {
+                return end;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Returns the position just past the first whitespace byte in [position, size),
+     * or size if there is none.
+     */
+    private static long nextWhitespaceEnd(FileChannel channel, long position, long size, ByteBuffer scan)
+            throws IOException {
+        long offset = position;
+        while (offset < size) {
+            scan.clear();
+            scan.limit((int) Math.min(scan.capacity(), size - offset));
+            int read = channel.read(scan, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (TextTokenizer.isRunBoundary(scan.get(i))) {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the position just past the last whitespace byte in [from, size),
+     * or from if there is none.
+     */
+    private static long lastWhitespaceEnd(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer scan = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+        long end = size;
+        while (end > from) {
+            long start = Math.max(from, end - BOUNDARY_SCAN_SIZE);
+            scan.clear();
+            scan.limit((int) (end - start));
+            while (scan.hasRemaining()) {
+                if (channel.read(scan, start + scan.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = scan.position() - 1; i >= 0; i--) {
+                if (TextTokenizer.isRunBoundary(scan.get(i))) {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return from;
+    }
+
+    private static byte byteBefore(FileChannel channel, long position, ByteBuffer scan) throws IOException {
+        scan.clear();
+        scan.limit(1);
+        channel.read(scan, position - 1);
+        return scan.get(0);
+    }
+
+    /**
+     * Maps a byte range of the file. The tokenizer reads the UTF-8 bytes in place,
+     * so the chunk is never decoded into a char buffer.
+     */
+    private static MappedByteBuffer map(FileChannel channel, long start, long end) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    }
+
+    /**
+     * Sets the largest chunk that is mapped at once, so tests can split long runs
+     * without a file of several gigabytes.
+     */
+    void setMaxMappedSize(int maxMappedSize) {
+        if (maxMappedSize < 1) {
+            throw new IllegalArgumentException("Mapped size must be at least 1");
+        }
+        this.maxMappedSize = maxMappedSize;
+    }
+
+    /**
+     * Gets the file path.
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+}
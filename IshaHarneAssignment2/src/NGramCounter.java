@@ -0,0 +1,225 @@
+/**
+ * Counts n-grams of consecutive counted words (after stop word and length
+ * filtering) for n from 2 to 4.
+ *
+ * Words are identified by their WordTable ids, and each n-gram is packed into
+ * one long of n ids with 64 / n bits each, so counting an n-gram costs one
+ * primitive hash map update and never builds a String. Strings are only made
+ * for the n-grams that are reported. The packing limits the vocabulary to
+ * 2^32 words for bigrams, 2^21 (about 2 million) for trigrams and 2^16 for 4-grams.
+ */
+class NGramCounter {
+    private final int n;
+    private final int bitsPerWord;
+    private final long wordMask;
+    private final long windowMask;
+    private final LongIntMap counts;
+
+    // The last n - 1 word ids, packed like a key; complete once filled reaches n - 1
+    private long window;
+    private int filled;
+
+    NGramCounter(int n) {
+        if (n < 2 || n > 4) {
+            throw new IllegalArgumentException("N-gram size must be between 2 and 4");
+        }
+        this.n = n;
+        this.bitsPerWord = 64 / n;
+        this.wordMask = (1L << bitsPerWord) - 1;
+        this.windowMask = (1L << (bitsPerWord * (n - 1))) - 1;
+        this.counts = new LongIntMap();
+    }
+
+    /**
+     * Adds the next counted word and counts the n-gram it completes.
+     */
+    void add(int wordId) {
+        if (wordId > wordMask) {
+            throw new IllegalStateException("Vocabulary too large for " + n + "-grams: more than "
+                    + (wordMask + 1) + " distinct words");
+        }
+        long key = (window << bitsPerWord) | wordId;
+        if (filled == n - 1) {
+            counts.add(key, 1);
+        } else {
+            filled++;
+        }
+        window = key & windowMask;
+    }
+
+    /**
+     * Starts a new sequence, so no n-gram spans the break (e.g. between documents).
+     */
+    void breakSequence() {
+        window = 0;
+        filled = 0;
+    }
+
+    /**
+     * Adds another counter's n-grams, translating its word ids to this counter's
+     * table. Every word of the other table must already be in this one.
+     */
+    void addAll(NGramCounter other, WordTable otherWords, WordTable words) {
+        int[] ids = new int[n];
+        for (int slot = 0; slot < other.counts.capacity(); slot++) {
+            int count = other.counts.countAt(slot);
+            if (count == 0) {
+                continue;
+            }
+            other.unpack(other.counts.keyAt(slot), ids);
+            for (int i = 0; i < n; i++) {
+                ids[i] = words.find(otherWords.word(ids[i]));
+            }
+            counts.add(pack(ids), count);
+        }
+    }
+
+    /**
+     * Returns the k most frequent n-grams as packed keys, best first: count
+     * descending, then alphabetically word by word.
+     */
+    long[] top(int k, WordTable words) {
+        int limit = Math.min(k, counts.size());
+        if (limit <= 0) {
+            return new long[0];
+        }
+        // Min-heap of map slots on rank: the worst of the current top k sits at the root
+        int[] heap = new int[limit];
+        int heapSize = 0;
+        for (int slot = 0; slot < counts.capacity(); slot++) {
+            if (counts.countAt(slot) == 0) {
+                continue;
+            }
+            if (heapSize < limit) {
+                heap[heapSize] = slot;
+                siftUp(heap, heapSize, words);
+                heapSize++;
+            } else if (ranksBefore(slot, heap[0], words)) {
+                heap[0] = slot;
+                siftDown(heap, heapSize, words);
+            }
+        }
+        long[] result = new long[limit];
+        for (int i = limit - 1; i >= 0; i--) {
+            result[i] = counts.keyAt(heap[0]);
+            heapSize--;
+            heap[0] = heap[heapSize];
+            siftDown(heap, heapSize, words);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the count of the n-gram made of these word ids, or 0.
+     */
+    int count(int[] ids) {
+        return counts.get(pack(ids));
+    }
+
+    int count(long key) {
+        return counts.get(key);
+    }
+
+    /**
+     * Joins the words of a packed n-gram with single spaces.
+     */
+    String text(long key, WordTable words) {
+        int[] ids = new int[n];
+        unpack(key, ids);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(words.word(ids[i]));
+        }
+        return text.toString();
+    }
+
+    int size() {
+        return n;
+    }
+
+    int distinctCount() {
+        return counts.size();
+    }
+
+    void clear() {
+        counts.clear();
+        breakSequence();
+    }
+
+    private long pack(int[] ids) {
+        long key = 0;
+        for (int i = 0; i < n; i++) {
+            key = (key << bitsPerWord) | ids[i];
+        }
+        return key;
+    }
+
+    private void unpack(long key, int[] ids) {
+        for (int i = n - 1; i >= 0; i--) {
+            ids[i] = (int) (key & wordMask);
+            key >>>= bitsPerWord;
+        }
+    }
+
+    /**
+     * True if the n-gram in slot a ranks before the one in slot b: higher
+     * count, or the same count and alphabetically first word by word.
+     */
+    private boolean ranksBefore(int a, int b, WordTable words) {
+        int countA = counts.countAt(a);
+        int countB = counts.countAt(b);
+        if (countA != countB) {
+            return countA > countB;
+        }
+        long keyA = counts.keyAt(a);
+        long keyB = counts.keyAt(b);
+        for (int shift = bitsPerWord * (n - 1); shift >= 0; shift -= bitsPerWord) {
+            int idA = (int) ((keyA >>> shift) & wordMask);
+            int idB = (int) ((keyB >>> shift) & wordMask);
+            if (idA != idB) {
+                return words.word(idA).compareTo(words.word(idB)) < 0;
+            }
+        }
+        return false;
+    }
+
+    private void siftUp(int[] heap, int index, WordTable words) {
+        int slot = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!ranksBefore(heap[parent], slot, words)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = slot;
+    }
+
+    private void siftDown(int[] heap, int heapSize, WordTable words) {
+        if (heapSize == 0) {
+            return;
+        }
+        int index = 0;
+        int slot = heap[0];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            // Pick the worse-ranked child
+            if (child + 1 < heapSize && ranksBefore(heap[child], heap[child + 1], words)) {
+                child++;
+            }
+            if (!ranksBefore(slot, heap[child], words)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = slot;
+    }
+}
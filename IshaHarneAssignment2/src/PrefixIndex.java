@@ -0,0 +1,105 @@
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sorted snapshot of a vocabulary for prefix queries.
+ * Words are kept in one sorted array with their counts alongside, so the words
+ * sharing a prefix form a contiguous range found by two binary searches.
+ * A query costs O(log V * prefix length + matches) and returns the matches
+ * already in alphabetical order.
+ */
+class PrefixIndex {
+    private final String[] words;
+    private final int[] counts;
+
+    PrefixIndex(WordTable table) {
+        int size = table.size();
+        String[] sorted = new String[size];
+        for (int id = 0; id < size; id++) {
+            sorted[id] = table.word(id);
+        }
+        Arrays.sort(sorted);
+
+        int[] sortedCounts = new int[size];
+        for (int i = 0; i < size; i++) {
+            sortedCounts[i] = table.count(table.find(sorted[i]));
+        }
+        this.words = sorted;
+        this.counts = sortedCounts;
+    }
+
+    /**
+     * Returns the words starting with the prefix, in alphabetical order.
+     */
+    List<String> wordsStartingWith(String prefix) {
+        int start = firstAtOrAfter(prefix);
+        int end = endOfPrefix(prefix, start);
+        List<String> matches = new ArrayList<String>(end - start);
+        for (int i = start; i < end; i++) {
+            matches.add(words[i]);
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the words starting with the prefix and their counts, in alphabetical order.
+     */
+    List<Map.Entry<String, Integer>> countsStartingWith(String prefix) {
+        int start = firstAtOrAfter(prefix);
+        int end = endOfPrefix(prefix, start);
+        List<Map.Entry<String, Integer>> matches = new ArrayList<Map.Entry<String, Integer>>(end - start);
+        for (int i = start; i < end; i++) {
+            matches.add(new AbstractMap.SimpleImmutableEntry<String, Integer>(words[i], counts[i]));
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the count of the word, or 0 if it is not in the vocabulary.
+     */
+    int count(String word) {
+        int index = firstAtOrAfter(word);
+        if (index < words.length && words[index].equals(word)) {
+            return counts[index];
+        }
+        return 0;
+    }
+
+    /**
+     * Index of the first word that is not less than the prefix.
+     */
+    private int firstAtOrAfter(String prefix) {
+        int low = 0;
+        int high = words.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (words[middle].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Index just past the last word starting with the prefix. All words from
+     * start onward that start with the prefix come before all that do not.
+     */
+    private int endOfPrefix(String prefix, int start) {
+        int low = start;
+        int high = words.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (words[middle].startsWith(prefix)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,243 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local HTTP service answering word queries from an AnalysisSnapshot.
+ * Requests are handled on a fixed pool of worker threads. The snapshot is
+ * immutable and swapped atomically, so queries never wait on each other or on
+ * a new analysis being published.
+ *
+ * Endpoints (GET, plain text, one "word TAB count" line per result):
+ *   /count?word=data      count of one word
+ *   /top?n=10             the n most frequent words (n defaults to 10)
+ *   /prefix?prefix=pro    words starting with the prefix, alphabetically
+ *   /metrics              per-endpoint request count and latency percentiles
+ */
+public class QueryServer {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int DEFAULT_TOP_N = 10;
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private volatile AnalysisSnapshot snapshot;
+    // Endpoint path -> latency of its queries; fixed at construction
+    private final Map<String, LatencyHistogram> latencies;
+
+    /**
+     * Creates a server on the loopback interface with one worker thread per processor.
+     * Pass port 0 to pick a free port.
+     */
+    public QueryServer(AnalysisSnapshot snapshot, int port) throws IOException {
+        this(snapshot, port, Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public QueryServer(AnalysisSnapshot snapshot, int port, int threads) throws IOException {
+        this.snapshot = snapshot;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.workers = Executors.newFixedThreadPool(threads);
+        server.setExecutor(workers);
+
+        Map<String, LatencyHistogram> histograms = new LinkedHashMap<String, LatencyHistogram>();
+        histograms.put("/count", new LatencyHistogram());
+        histograms.put("/top", new LatencyHistogram());
+        histograms.put("/prefix", new LatencyHistogram());
+        this.latencies = Collections.unmodifiableMap(histograms);
+
+        server.createContext("/count", new QueryHandler("/count") {
+            String answer(AnalysisSnapshot current, Map<String, String> parameters) {
+                String word = required(parameters, "word");
+                return word.toLowerCase() + "\t" + current.getWordCount(word) + "\n";
+            }
+        });
+        server.createContext("/top", new QueryHandler("/top") {
+            String answer(AnalysisSnapshot current, Map<String, String> parameters) {
+                int n = DEFAULT_TOP_N;
+                if (parameters.containsKey("n")) {
+                    n = parseCount(parameters.get("n"));
+                }
+                return lines(current.getTopNWords(n));
+            }
+        });
+        server.createContext("/prefix", new QueryHandler("/prefix") {
+            String answer(AnalysisSnapshot current, Map<String, String> parameters) {
+                return lines(current.getWordCountsStartingWith(required(parameters, "prefix")));
+            }
+        });
+        server.createContext("/metrics", new QueryHandler(null) {
+            String answer(AnalysisSnapshot current, Map<String, String> parameters) {
+                return formatMetrics();
+            }
+        });
+    }
+
+    /**
+     * Starts accepting requests in the background.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to the given number of seconds for
+     * running queries to finish, then shuts the worker threads down.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the port the server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Replaces the snapshot answering queries. Queries already running finish
+     * on the snapshot they started with.
+     */
+    public void setSnapshot(AnalysisSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public AnalysisSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Formats the query count, mean and percentile latencies of every endpoint.
+     */
+    public String formatMetrics() {
+        StringBuilder metrics = new StringBuilder();
+        metrics.append(String.format("%-8s %10s %10s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "mean_us", "p50_us", "p90_us", "p99_us", "max_us"));
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            metrics.append(String.format("%-8s %10d %10.1f %10d %10d %10d %10d%n",
+                    entry.getKey(), histogram.count(), histogram.meanMicros(),
+                    histogram.percentileMicros(0.50), histogram.percentileMicros(0.90),
+                    histogram.percentileMicros(0.99), histogram.maxMicros()));
+        }
+        return metrics.toString();
+    }
+
+    private static String lines(List<Map.Entry<String, Integer>> entries) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < entries.size(); i++) {
+            Map.Entry<String, Integer> entry = entries.get(i);
+            text.append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String required(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing query parameter: " + name);
+        }
+        return value;
+    }
+
+    private static int parseCount(String value) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n >= 0) {
+                return n;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("n must be a non-negative integer: " + value);
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<String, String>();
+        if (query == null) {
+            return parameters;
+        }
+        String[] pairs = query.split("&");
+        for (int i = 0; i < pairs.length; i++) {
+            int equals = pairs[i].indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pairs[i].substring(0, equals), "UTF-8"),
+                        URLDecoder.decode(pairs[i].substring(equals + 1), "UTF-8"));
+            } else if (!pairs[i].isEmpty()) {
+                parameters.put(URLDecoder.decode(pairs[i], "UTF-8"), "");
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Answers one kind of query against the current snapshot and records its
+     * latency, from receipt to the last byte of the response, under the endpoint.
+     */
+    private abstract class QueryHandler implements HttpHandler {
+        private final LatencyHistogram latency;
+
+        QueryHandler(String endpoint) {
+            this.latency = endpoint == null ? null : latencies.get(endpoint);
+        }
+
+        abstract String answer(AnalysisSnapshot current, Map<String, String> parameters);
+
+        public void handle(HttpExchange exchange) throws IOException {
+            long start = System.nanoTime();
+            try {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    respond(exchange, 405, "Only GET is supported\n");
+                    return;
+                }
+                String body;
+                try {
+                    body = answer(snapshot, parseQuery(exchange.getRequestURI().getRawQuery()));
+                } catch (IllegalArgumentException e) {
+                    respond(exchange, 400, e.getMessage() + "\n");
+                    return;
+                }
+                respond(exchange, 200, body);
+            } finally {
+                exchange.close();
+                if (latency != null) {
+                    latency.record(System.nanoTime() - start);
+                }
+            }
+        }
+
+        private void respond(HttpExchange exchange, int status, String body) throws IOException {
+            byte[] bytes = body.getBytes(UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            // A length of -1 tells the server there is no body; 0 would mean chunked
+            exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+            OutputStream out = exchange.getResponseBody();
+            try {
+                out.write(bytes);
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
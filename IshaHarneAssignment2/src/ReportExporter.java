@@ -0,0 +1,80 @@
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes many reports to separate files concurrently. Each worker thread owns
+ * one ReportWriter and reuses it for every report it takes, so buffer memory
+ * is threadCount times the buffer size no matter how many reports there are.
+ */
+public class ReportExporter {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private int threadCount;
+    private int bufferSize;
+
+    public ReportExporter(int threadCount) {
+        this(threadCount, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ReportExporter(int threadCount, int bufferSize) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+        this.threadCount = threadCount;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Writes each report to its output file path (the map key) as UTF-8.
+     */
+    public void exportAll(Map<String, StatisticsReport> reportsByPath) throws IOException {
+        final List<String> paths = new ArrayList<String>(reportsByPath.keySet());
+        final List<StatisticsReport> reports = new ArrayList<StatisticsReport>(reportsByPath.values());
+        final AtomicInteger nextReport = new AtomicInteger();
+
+        int workers = Math.min(threadCount, Math.max(1, reports.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+        try {
+            for (int i = 0; i < workers; i++) {
+                results.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws IOException {
+                        ReportWriter writer = new ReportWriter(UTF_8, bufferSize);
+                        int index;
+                        while ((index = nextReport.getAndIncrement()) < reports.size()) {
+                            reports.get(index).exportReport(paths.get(index), writer);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                results.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while exporting reports", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to export reports", cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
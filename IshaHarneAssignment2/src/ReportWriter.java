@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Appendable that encodes text into a channel through fixed-size buffers.
+ * Text is collected in a char buffer, encoded into a direct byte buffer when
+ * that fills up, and written to the channel, so memory use is bounded by the
+ * buffer size however long the text is. One writer can be reused for many
+ * channels, one after another, by calling start() and finish() for each.
+ * Not thread safe; give each thread its own writer.
+ */
+public class ReportWriter implements Appendable {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final CharsetEncoder encoder;
+    private final CharBuffer chars;
+    private final ByteBuffer bytes;
+    private WritableByteChannel channel;
+
+    /**
+     * Creates a UTF-8 writer with an 8 KB char buffer.
+     */
+    public ReportWriter() {
+        this(Charset.forName("UTF-8"), DEFAULT_BUFFER_SIZE);
+    }
+
+    public ReportWriter(Charset charset, int bufferSize) {
+        if (bufferSize < 2) {
+            throw new IllegalArgumentException("Buffer size must be at least 2");
+        }
+        // Characters the charset cannot encode are replaced, as FileWriter does
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chars = CharBuffer.allocate(bufferSize);
+        this.bytes = ByteBuffer.allocateDirect((int) Math.ceil(bufferSize * encoder.maxBytesPerChar()));
+    }
+
+    /**
+     * Starts writing to a channel. The channel is not closed by this writer.
+     */
+    public void start(WritableByteChannel target) {
+        this.channel = target;
+        encoder.reset();
+        chars.clear();
+        bytes.clear();
+    }
+
+    public ReportWriter append(CharSequence text) throws IOException {
+        return append(text, 0, text.length());
+    }
+
+    public ReportWriter append(CharSequence text, int start, int end) throws IOException {
+        checkStarted();
+        int i = start;
+        while (i < end) {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            int count = Math.min(chars.remaining(), end - i);
+            if (text instanceof String) {
+                chars.put((String) text, i, i + count);
+            } else {
+                for (int j = i; j < i + count; j++) {
+                    chars.put(text.charAt(j));
+                }
+            }
+            i += count;
+        }
+        return this;
+    }
+
+    public ReportWriter append(char c) throws IOException {
+        checkStarted();
+        if (!chars.hasRemaining()) {
+            encode(false);
+        }
+        chars.put(c);
+        return this;
+    }
+
+    /**
+     * Encodes and writes everything appended since start(). The writer can then
+     * be started on another channel.
+     */
+    public void finish() throws IOException {
+        checkStarted();
+        encode(true);
+        while (encoder.flush(bytes).isOverflow()) {
+            writeBytes();
+        }
+        writeBytes();
+        channel = null;
+    }
+
+    /**
+     * Encodes the buffered chars, writing the byte buffer out whenever it fills.
+     * A surrogate pair cut at the end of the buffer stays for the next round.
+     */
+    private void encode(boolean endOfInput) throws IOException {
+        chars.flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isUnderflow()) {
+                break;
+            }
+            writeBytes();
+        }
+        chars.compact();
+    }
+
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    private void checkStarted() {
+        if (channel == null) {
+            throw new IllegalStateException("Call start() before writing");
+        }
+    }
+}
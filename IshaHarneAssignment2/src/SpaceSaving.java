@@ -0,0 +1,196 @@
+/**
+ * Space-Saving heavy hitters: tracks at most capacity words with their counts.
+ * When a new word arrives and all slots are taken, it replaces the word with
+ * the lowest count and inherits that count plus one, so tracked counts only
+ * ever overestimate, by at most the inherited error. Every word occurring more
+ * than totalWords / capacity times is guaranteed to be tracked.
+ *
+ * Tracked words live in a min-heap on count (to find the word to replace) and
+ * in an open-addressing table keyed by tokenizer buffer slices, so a word that
+ * is already tracked is counted without allocating.
+ */
+class SpaceSaving {
+    private final int capacity;
+    private final String[] words;
+    private final int[] hashes;
+    private final long[] counts;
+    private final long[] errors;
+    private int size;
+
+    // Min-heap of entry indices by count, and each entry's position in it
+    private final int[] heap;
+    private final int[] heapPositions;
+
+    // Hash slot -> entry index + 1 (0 marks an empty slot); length is a power of two
+    private final int[] slots;
+    private final int mask;
+
+    SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.words = new String[capacity];
+        this.hashes = new int[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.heap = new int[capacity];
+        this.heapPositions = new int[capacity];
+        int slotCount = 2;
+        while (slotCount < capacity * 2) {
+            slotCount = slotCount * 2;
+        }
+        this.slots = new int[slotCount];
+        this.mask = slotCount - 1;
+    }
+
+    /**
+     * Counts one occurrence of the word in buffer[offset, offset + length).
+     */
+    void add(char[] buffer, int offset, int length, int hash) {
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            int entry = slots[slot] - 1;
+            if (hashes[entry] == hash && equalsAt(entry, buffer, offset, length)) {
+                counts[entry]++;
+                siftDown(heapPositions[entry]);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int entry;
+        if (size < capacity) {
+            entry = size;
+            counts[entry] = 1;
+            errors[entry] = 0;
+            heap[size] = entry;
+            heapPositions[entry] = size;
+            size++;
+            siftUp(size - 1);
+        } else {
+            // Replace the least counted word, which sits at the root
+            entry = heap[0];
+            removeSlot(entry);
+            errors[entry] = counts[entry];
+            counts[entry]++;
+            siftDown(0);
+            // The removal may have moved entries, so look for a free slot again
+            slot = hash & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+        }
+        words[entry] = new String(buffer, offset, length);
+        hashes[entry] = hash;
+        slots[slot] = entry + 1;
+    }
+
+    /**
+     * Returns the entry index of the word, or -1 if it is not tracked.
+     */
+    int find(String word, int hash) {
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            int entry = slots[slot] - 1;
+            if (hashes[entry] == hash && words[entry].equals(word)) {
+                return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    String word(int entry) {
+        return words[entry];
+    }
+
+    long count(int entry) {
+        return counts[entry];
+    }
+
+    /**
+     * Gets how much of the entry's count may have been inherited from replaced words.
+     */
+    long error(int entry) {
+        return errors[entry];
+    }
+
+    /**
+     * Removes an entry from the slot table, shifting later entries of the
+     * same probe run back so that lookups never stop early at a hole.
+     */
+    private void removeSlot(int entry) {
+        int hole = hashes[entry] & mask;
+        while (slots[hole] != entry + 1) {
+            hole = (hole + 1) & mask;
+        }
+        slots[hole] = 0;
+        int next = (hole + 1) & mask;
+        while (slots[next] != 0) {
+            int home = hashes[slots[next] - 1] & mask;
+            // Move the entry into the hole unless its home lies cyclically in (hole, next]
+            boolean homeInRange = hole <= next ? (home > hole && home <= next) : (home > hole || home <= next);
+            if (!homeInRange) {
+                slots[hole] = slots[next];
+                slots[next] = 0;
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private boolean equalsAt(int entry, char[] buffer, int offset, int length) {
+        String word = words[entry];
+        if (word.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (word.charAt(i) != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void siftUp(int position) {
+        int entry = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (counts[heap[parent]] <= counts[entry]) {
+                break;
+            }
+            moveTo(heap[parent], position);
+            position = parent;
+        }
+        moveTo(entry, position);
+    }
+
+    private void siftDown(int position) {
+        int entry = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[entry] <= counts[heap[child]]) {
+                break;
+            }
+            moveTo(heap[child], position);
+            position = child;
+        }
+        moveTo(entry, position);
+    }
+
+    private void moveTo(int entry, int position) {
+        heap[position] = entry;
+        heapPositions[entry] = position;
+    }
+}
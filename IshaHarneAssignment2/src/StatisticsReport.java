@@ -1,5 +1,4 @@
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
@@ -9,10 +8,10 @@ import java.util.Set;
  * Generates formatted statistics reports from word analysis.
  */
 public class StatisticsReport {
-    private WordCounter wordCounter;
+    private WordStatistics wordCounter;
     private String sourceFile;
 
-    public StatisticsReport(WordCounter wordCounter, String sourceFile) {
+    public StatisticsReport(WordStatistics wordCounter, String sourceFile) {
         this.wordCounter = wordCounter;
         this.sourceFile = sourceFile;
     }
@@ -33,39 +32,64 @@ public class StatisticsReport {
      */
     public String generateReport() {
         StringBuilder report = new StringBuilder();
+        try {
+            writeReport(report);
+        } catch (IOException e) {
+            // A StringBuilder never throws
+            throw new IllegalStateException(e);
+        }
+        return report.toString();
+    }
 
-        report.append(repeatChar('=', 60)).append("\n");
-        report.append("           TEXT DOCUMENT ANALYSIS REPORT\n");
-        report.append(repeatChar('=', 60)).append("\n\n");
-
-        report.append("Source File: ").append(sourceFile).append("\n\n");
+    /**
+     * Writes the full report to out section by section, without building it
+     * as one String first. Gives exactly the text of generateReport().
+     */
+    public void writeReport(Appendable out) throws IOException {
+        out.append(repeatChar('=', 60)).append("\n");
+        out.append("           TEXT DOCUMENT ANALYSIS REPORT\n");
+        out.append(repeatChar('=', 60)).append("\n\n");
+
+        out.append("Source File: ").append(sourceFile).append("\n\n");
+
+        writeBasicStatistics(out);
+        writeTopWords(out);
+        writeTopNGrams(out);
+        writeLengthDistribution(out);
+        writeStopWords(out);
+
+        out.append(repeatChar('=', 60)).append("\n");
+        out.append("                 END OF REPORT\n");
+        out.append(repeatChar('=', 60)).append("\n");
+    }
 
-        // Basic Statistics
-        report.append(repeatChar('-', 40)).append("\n");
-        report.append("BASIC STATISTICS\n");
-        report.append(repeatChar('-', 40)).append("\n");
-        report.append("Total Word Count:      ").append(wordCounter.getTotalWordCount()).append("\n");
-        report.append("Unique Word Count:     ").append(wordCounter.getUniqueWordCount()).append("\n");
+    private void writeBasicStatistics(Appendable out) throws IOException {
+        out.append(repeatChar('-', 40)).append("\n");
+        out.append("BASIC STATISTICS\n");
+        out.append(repeatChar('-', 40)).append("\n");
+        out.append("Total Word Count:      ").append(String.valueOf(wordCounter.getTotalWords())).append("\n");
+        out.append("Unique Word Count:     ").append(String.valueOf(wordCounter.getUniqueWordCount())).append("\n");
 
         // Format average to 2 decimal places
         double avgLength = wordCounter.getAverageWordLength();
         String avgFormatted = String.format("%.2f", avgLength);
-        report.append("Average Word Length:   ").append(avgFormatted).append(" characters\n");
+        out.append("Average Word Length:   ").append(avgFormatted).append(" characters\n");
 
         String longestWord = wordCounter.getLongestWord();
-        report.append("Longest Word:          ").append(longestWord);
-        report.append(" (").append(longestWord.length()).append(" characters)\n");
+        out.append("Longest Word:          ").append(longestWord);
+        out.append(" (").append(String.valueOf(longestWord.length())).append(" characters)\n");
 
         String mostFrequent = wordCounter.getMostFrequentWord();
         int mostFrequentCount = wordCounter.getMostFrequentWordCount();
-        report.append("Most Frequent Word:    ").append(mostFrequent);
-        report.append(" (appears ").append(mostFrequentCount).append(" times)\n");
-        report.append("\n");
+        out.append("Most Frequent Word:    ").append(mostFrequent);
+        out.append(" (appears ").append(String.valueOf(mostFrequentCount)).append(" times)\n");
+        out.append("\n");
+    }
 
-        // Top 10 Words
-        report.append(repeatChar('-', 40)).append("\n");
-        report.append("TOP 10 MOST FREQUENT WORDS\n");
-        report.append(repeatChar('-', 40)).append("\n");
+    private void writeTopWords(Appendable out) throws IOException {
+        out.append(repeatChar('-', 40)).append("\n");
+        out.append("TOP 10 MOST FREQUENT WORDS\n");
+        out.append(repeatChar('-', 40)).append("\n");
 
         List<Map.Entry<String, Integer>> topWords = wordCounter.getTopNWords(10);
         int rank = 1;
@@ -74,77 +98,94 @@ public class StatisticsReport {
             String rankStr = String.format("%2d", rank);
             // Format word with padding
             String wordStr = String.format("%-20s", entry.getKey());
-            report.append(rankStr).append(". ").append(wordStr).append(entry.getValue()).append("\n");
+            out.append(rankStr).append(". ").append(wordStr).append(String.valueOf(entry.getValue())).append("\n");
             rank = rank + 1;
         }
-        report.append("\n");
-
-        // Word Length Distribution
-        report.append(repeatChar('-', 40)).append("\n");
-        report.append("WORD LENGTH DISTRIBUTION\n");
-        report.append(repeatChar('-', 40)).append("\n");
+        out.append("\n");
+    }
 
-        Map<String, Integer> frequencies = wordCounter.getWordFrequency();
-        int[] lengthCounts = new int[20]; // Support words up to 19 characters
+    /**
+     * Lists the top n-grams; the section is left out when n-grams are not counted.
+     */
+    private void writeTopNGrams(Appendable out) throws IOException {
+        int size = wordCounter.getNGramSize();
+        if (size == 0) {
+            return;
+        }
+        String name = size == 2 ? "BIGRAMS" : size == 3 ? "TRIGRAMS" : size + "-GRAMS";
+        out.append(repeatChar('-', 40)).append("\n");
+        out.append("TOP 10 MOST FREQUENT ").append(name).append("\n");
+        out.append(repeatChar('-', 40)).append("\n");
 
-        for (String word : frequencies.keySet()) {
-            int len = word.length();
-            int count = frequencies.get(word);
-            if (len < lengthCounts.length) {
-                lengthCounts[len] = lengthCounts[len] + count;
-            }
+        List<Map.Entry<String, Integer>> topNGrams = wordCounter.getTopNGrams(10);
+        int rank = 1;
+        for (Map.Entry<String, Integer> entry : topNGrams) {
+            String rankStr = String.format("%2d", rank);
+            String nGramStr = String.format("%-30s", entry.getKey());
+            out.append(rankStr).append(". ").append(nGramStr).append(String.valueOf(entry.getValue())).append("\n");
+            rank = rank + 1;
         }
+        out.append("\n");
+    }
+
+    private void writeLengthDistribution(Appendable out) throws IOException {
+        out.append(repeatChar('-', 40)).append("\n");
+        out.append("WORD LENGTH DISTRIBUTION\n");
+        out.append(repeatChar('-', 40)).append("\n");
 
-        for (int i = 3; i < lengthCounts.length; i++) {
+        // Counted while tokenizing, so the vocabulary is not copied or walked here
+        long[] lengthCounts = wordCounter.getWordLengthCounts();
+        int maxLength = Math.min(lengthCounts.length, 20); // Support words up to 19 characters
+
+        for (int i = 3; i < maxLength; i++) {
             if (lengthCounts[i] > 0) {
                 String lenStr = String.format("%2d", i);
-                report.append(lenStr).append(" characters: ").append(lengthCounts[i]).append(" words\n");
+                out.append(lenStr).append(" characters: ").append(String.valueOf(lengthCounts[i])).append(" words\n");
             }
         }
-        report.append("\n");
+        out.append("\n");
+    }
 
-        // Stop Words Info
-        report.append(repeatChar('-', 40)).append("\n");
-        report.append("STOP WORDS EXCLUDED\n");
-        report.append(repeatChar('-', 40)).append("\n");
-        report.append("The following stop words were excluded from analysis:\n");
+    private void writeStopWords(Appendable out) throws IOException {
+        out.append(repeatChar('-', 40)).append("\n");
+        out.append("STOP WORDS EXCLUDED\n");
+        out.append(repeatChar('-', 40)).append("\n");
+        out.append("The following stop words were excluded from analysis:\n");
 
         // Join stop words with commas
-        Set<String> stopWords = wordCounter.getStopWords();
-        StringBuilder stopWordList = new StringBuilder();
+        Set<String> stopWords = wordCounter.getStopWordsView();
         boolean first = true;
         for (String word : stopWords) {
             if (!first) {
-                stopWordList.append(", ");
+                out.append(", ");
             }
-            stopWordList.append(word);
+            out.append(word);
             first = false;
         }
-        report.append(stopWordList.toString());
-        report.append("\n\n");
-
-        report.append(repeatChar('=', 60)).append("\n");
-        report.append("                 END OF REPORT\n");
-        report.append(repeatChar('=', 60)).append("\n");
-
-        return report.toString();
+        out.append("\n\n");
     }
 
     /**
-     * Exports the full statistics report to a file.
+     * Exports the full statistics report to a UTF-8 file.
      */
     public void exportReport(String outputFilePath) throws IOException {
-        String report = generateReport();
-        BufferedWriter writer = null;
+        exportReport(outputFilePath, new ReportWriter());
+        System.out.println("Report exported to: " + outputFilePath);
+    }
+
+    /**
+     * Streams the report to a file through the given writer, which can be
+     * reused for the next report. The file is written as the writer's charset.
+     */
+    public void exportReport(String outputFilePath, ReportWriter writer) throws IOException {
+        FileOutputStream output = new FileOutputStream(outputFilePath);
         try {
-            writer = new BufferedWriter(new FileWriter(outputFilePath));
-            writer.write(report);
+            writer.start(output.getChannel());
+            writeReport(writer);
+            writer.finish();
         } finally {
-            if (writer != null) {
-                writer.close();
-            }
+            output.close();
         }
-        System.out.println("Report exported to: " + outputFilePath);
     }
 
     /**
@@ -159,7 +200,7 @@ public class StatisticsReport {
      */
     public String getSummary() {
         String avgFormatted = String.format("%.2f", wordCounter.getAverageWordLength());
-        return "Summary: " + wordCounter.getTotalWordCount() + " total words, " +
+        return "Summary: " + wordCounter.getTotalWords() + " total words, " +
                wordCounter.getUniqueWordCount() + " unique words, avg length " +
                avgFormatted + ", most frequent: '" + wordCounter.getMostFrequentWord() +
                "' (" + wordCounter.getMostFrequentWordCount() + " times)";
@@ -189,14 +230,14 @@ public class StatisticsReport {
         StringBuilder sb = new StringBuilder();
         sb.append("Words starting with '").append(prefix).append("':\n");
 
-        List<String> words = wordCounter.getWordsStartingWith(prefix);
+        List<Map.Entry<String, Integer>> words = wordCounter.getWordCountsStartingWith(prefix);
         if (words.isEmpty()) {
             sb.append("  No words found.\n");
         } else {
             for (int i = 0; i < words.size(); i++) {
-                String word = words.get(i);
-                sb.append("  - ").append(word);
-                sb.append(" (").append(wordCounter.getWordCount(word)).append(")\n");
+                Map.Entry<String, Integer> entry = words.get(i);
+                sb.append("  - ").append(entry.getKey());
+                sb.append(" (").append(entry.getValue()).append(")\n");
             }
         }
         return sb.toString();
@@ -0,0 +1,204 @@
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides which tokens are counted: a token passes if it has at least the
+ * minimum length and is not a stop word.
+ *
+ * Stop words are stored in one small open-addressing table per word length,
+ * with the characters of each slot packed in a char array. A token is checked
+ * straight from the tokenizer's buffer slice: its length picks the table (and
+ * rejects lengths no stop word has), then one probe sequence compares chars.
+ * Stop words shorter than the minimum length are never looked up, so they are
+ * not stored. Filters are immutable and can be shared between threads.
+ */
+public class StopWordFilter {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final int minWordLength;
+    private final Set<String> words;
+    // Per word length (null if no stop word has that length)
+    private final char[][] bucketChars;
+    private final int[][] bucketHashes;
+    private final boolean[][] bucketUsed;
+
+    /**
+     * Creates a filter for the given stop words, which are lowercased.
+     */
+    public StopWordFilter(Collection<String> stopWords, int minWordLength) {
+        if (minWordLength < 0) {
+            throw new IllegalArgumentException("Minimum word length must not be negative");
+        }
+        this.minWordLength = minWordLength;
+        Set<String> lowercased = new HashSet<String>();
+        int maxLength = 0;
+        for (String word : stopWords) {
+            String lower = word.toLowerCase();
+            lowercased.add(lower);
+            maxLength = Math.max(maxLength, lower.length());
+        }
+        this.words = lowercased;
+
+        int[] perLength = new int[maxLength + 1];
+        for (String word : lowercased) {
+            perLength[word.length()]++;
+        }
+        this.bucketChars = new char[maxLength + 1][];
+        this.bucketHashes = new int[maxLength + 1][];
+        this.bucketUsed = new boolean[maxLength + 1][];
+        for (int length = Math.max(1, minWordLength); length <= maxLength; length++) {
+            if (perLength[length] > 0) {
+                // Load factor at most one half
+                int slots = 2;
+                while (slots < perLength[length] * 2) {
+                    slots = slots * 2;
+                }
+                bucketChars[length] = new char[slots * length];
+                bucketHashes[length] = new int[slots];
+                bucketUsed[length] = new boolean[slots];
+            }
+        }
+        for (String word : lowercased) {
+            if (word.length() >= minWordLength && word.length() > 0) {
+                insert(word);
+            }
+        }
+    }
+
+    /**
+     * Loads stop words from a UTF-8 file with one word per line. Blank lines
+     * and lines starting with '#' are ignored.
+     */
+    public static StopWordFilter load(String filePath, int minWordLength) throws IOException {
+        List<String> stopWords = new ArrayList<String>();
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(filePath), UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String word = line.trim();
+                if (!word.isEmpty() && !word.startsWith("#")) {
+                    stopWords.add(word);
+                }
+            }
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+        return new StopWordFilter(stopWords, minWordLength);
+    }
+
+    private void insert(String word) {
+        int length = word.length();
+        int hash = WordTable.hash(word);
+        boolean[] used = bucketUsed[length];
+        int mask = used.length - 1;
+        int slot = hash & mask;
+        while (used[slot]) {
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        bucketHashes[length][slot] = hash;
+        word.getChars(0, length, bucketChars[length], slot * length);
+    }
+
+    /**
+     * True if the token in buffer[offset, offset + length) should be counted.
+     */
+    public boolean accepts(char[] buffer, int offset, int length) {
+        return length >= minWordLength && !isStopWord(buffer, offset, length);
+    }
+
+    /**
+     * True if the token should be counted.
+     */
+    public boolean accepts(String token) {
+        return token.length() >= minWordLength && !isStopWord(token);
+    }
+
+    /**
+     * True if the slice is one of the stored stop words. Words shorter than the
+     * minimum length are not stored and always give false.
+     */
+    boolean isStopWord(char[] buffer, int offset, int length) {
+        if (length >= bucketUsed.length || bucketUsed[length] == null) {
+            return false;
+        }
+        int hash = WordTable.hash(buffer, offset, length);
+        boolean[] used = bucketUsed[length];
+        int[] hashes = bucketHashes[length];
+        char[] chars = bucketChars[length];
+        int mask = used.length - 1;
+        int slot = hash & mask;
+        while (used[slot]) {
+            if (hashes[slot] == hash && equalsAt(chars, slot * length, buffer, offset, length)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    boolean isStopWord(String token) {
+        int length = token.length();
+        if (length >= bucketUsed.length || bucketUsed[length] == null) {
+            return false;
+        }
+        int hash = WordTable.hash(token);
+        boolean[] used = bucketUsed[length];
+        int[] hashes = bucketHashes[length];
+        char[] chars = bucketChars[length];
+        int mask = used.length - 1;
+        int slot = hash & mask;
+        while (used[slot]) {
+            if (hashes[slot] == hash && equalsAt(chars, slot * length, token)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    private static boolean equalsAt(char[] chars, int start, char[] buffer, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (chars[start + i] != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equalsAt(char[] chars, int start, String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (chars[start + i] != token.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the minimum length of a counted word.
+     */
+    public int getMinWordLength() {
+        return minWordLength;
+    }
+
+    /**
+     * Gets a read-only view of all stop words, including those shorter than
+     * the minimum length.
+     */
+    public Set<String> getStopWords() {
+        return Collections.unmodifiableSet(words);
+    }
+}
@@ -1,4 +1,13 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -7,41 +16,193 @@ import java.util.Map;
  * Demonstrates usage of TextReader, WordCounter, and StatisticsReport.
  */
 public class TextAnalyzer {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // Largest file analyze() reads into memory whole; larger files are streamed
+    private static final long IN_MEMORY_LIMIT = 64L << 20;
+
     private TextReader textReader;
     private WordCounter wordCounter;
     private StatisticsReport statisticsReport;
+    // Source of query results: wordCounter, or the counter of an approximate analysis
+    private WordStatistics statistics;
+    // Bytes of the file already counted by analyzeIncremental, or -1 when the
+    // counter was last filled by a full analysis
+    private long processedOffset;
 
     public TextAnalyzer(String inputFilePath) {
-        this.textReader = new TextReader(inputFilePath);
-        this.wordCounter = new WordCounter();
+        this(inputFilePath, new WordCounter().getStopWordFilter());
+    }
+
+    /**
+     * Creates an analyzer that filters words with the given stop word filter.
+     */
+    public TextAnalyzer(String inputFilePath, StopWordFilter stopWordFilter) {
+        this(new TextReader(inputFilePath), stopWordFilter);
+    }
+
+    /**
+     * Creates an analyzer that decodes the file with the given charset.
+     */
+    public TextAnalyzer(String inputFilePath, Charset charset) {
+        this(new TextReader(inputFilePath, charset), new WordCounter().getStopWordFilter());
+    }
+
+    /**
+     * Creates an analyzer over the given reader, which determines how the file
+     * is decoded, and filters words with the given stop word filter.
+     */
+    public TextAnalyzer(TextReader textReader, StopWordFilter stopWordFilter) {
+        this.textReader = textReader;
+        this.wordCounter = new WordCounter(stopWordFilter);
+        this.processedOffset = -1;
+        this.statistics = wordCounter;
     }
 
     /**
      * Analyzes the text file and prepares statistics.
      */
     public void analyze() throws IOException {
-        // Read and normalize the text
-        String normalizedText = textReader.readAndNormalize();
-
-        // Process the text and count words
-        wordCounter.processText(normalizedText);
+        // Read, normalize, tokenize and count words in a single pass
+        wordCounter.setLiveTopWords(0);
+        countFile(textReader, wordCounter);
+        trackReportTopWords();
+        processedOffset = -1;
+        statistics = wordCounter;
 
         // Create the statistics report
         statisticsReport = new StatisticsReport(wordCounter, textReader.getFilePath());
     }
 
+    /**
+     * Replaces the counter's contents with the words of the reader's file.
+     * A UTF-8 file of up to IN_MEMORY_LIMIT bytes read with malformed input
+     * replaced is tokenized straight from its bytes; any other file is decoded
+     * with the reader's charset and tokenized chunk by chunk.
+     */
+    static void countFile(TextReader reader, WordCounter counter) throws IOException {
+        if (reader.getMalformedInputAction() == CodingErrorAction.REPLACE
+                && new File(reader.getFilePath()).length() <= IN_MEMORY_LIMIT
+                && reader.detectCharset().equals(UTF_8)) {
+            counter.processUtf8Text(reader.readBytes());
+        } else {
+            counter.processReader(reader);
+        }
+    }
+
+    /**
+     * Analyzes the text file through memory-mapped chunks counted in parallel.
+     * Produces the same statistics as analyze() for UTF-8 input, but the file
+     * size is no longer limited by the heap.
+     */
+    public void analyzeMapped() throws IOException {
+        MappedTextReader mappedReader = new MappedTextReader(textReader.getFilePath());
+        wordCounter.setLiveTopWords(0);
+        mappedReader.countWords(wordCounter);
+        trackReportTopWords();
+        processedOffset = -1;
+        statistics = wordCounter;
+
+        statisticsReport = new StatisticsReport(wordCounter, textReader.getFilePath());
+    }
+
+    /**
+     * Analyzes only what was appended to the file since the previous call and
+     * adds it to the existing counts, for log files that keep growing. The first
+     * call, or a call after analyze(), counts the whole file. If the file has
+     * become shorter than what was already counted (e.g. it was rotated), the
+     * counts are reset and the file is read from the start.
+     *
+     * A final word without whitespace after it is counted once more text follows
+     * it, so a word being written while the file is read is never split. The file
+     * is read as UTF-8.
+     */
+    public void analyzeIncremental() throws IOException {
+        String filePath = textReader.getFilePath();
+        if (processedOffset < 0 || new File(filePath).length() < processedOffset) {
+            wordCounter.clear();
+            processedOffset = 0;
+        }
+
+        MappedTextReader mappedReader = new MappedTextReader(filePath);
+        wordCounter.setLiveTopWords(0);
+        processedOffset = mappedReader.countNewWords(wordCounter, processedOffset);
+        trackReportTopWords();
+        statistics = wordCounter;
+
+        statisticsReport = new StatisticsReport(wordCounter, filePath);
+    }
+
+    /**
+     * Tracks the top 10 words, all the report and main() ask for, from the
+     * finished counts. Counting runs with tracking off, so tokens do not pay
+     * for heap updates; CorpusAnalyzer likewise turns it on after merging.
+     */
+    private void trackReportTopWords() {
+        wordCounter.setLiveTopWords(10);
+    }
+
+    /**
+     * Gets the number of bytes of the file counted so far by analyzeIncremental().
+     */
+    public long getProcessedOffset() {
+        return Math.max(processedOffset, 0);
+    }
+
+    /**
+     * Analyzes the text file approximately in fixed memory, for files whose
+     * vocabulary is too large to count exactly. The file is streamed through
+     * memory-mapped chunks as UTF-8, and the report keeps the usual layout with
+     * estimated frequencies, top words and unique word count.
+     */
+    public void analyzeApproximate(ApproximateWordCounter approximateCounter) throws IOException {
+        MappedTextReader mappedReader = new MappedTextReader(textReader.getFilePath());
+        mappedReader.tokenize(approximateCounter);
+        statistics = approximateCounter;
+
+        statisticsReport = new StatisticsReport(approximateCounter, textReader.getFilePath());
+    }
+
+    /**
+     * Saves the counted words and statistics to an index file that
+     * WordIndexFile.open() can query without recounting the text.
+     */
+    public void saveIndex(String indexFilePath) throws IOException {
+        if (statisticsReport == null) {
+            throw new IllegalStateException("Analysis has not been performed. Call analyze() first.");
+        }
+        if (statistics != wordCounter) {
+            throw new IllegalStateException("An approximate analysis cannot be saved as an index.");
+        }
+        WordIndexFile.write(wordCounter, indexFilePath);
+    }
+
+    /**
+     * Takes an immutable snapshot of the exact counts that any number of
+     * threads can query, e.g. through a QueryServer, while this analyzer goes
+     * on counting.
+     */
+    public AnalysisSnapshot snapshot() {
+        if (statisticsReport == null) {
+            throw new IllegalStateException("Analysis has not been performed. Call analyze() first.");
+        }
+        if (statistics != wordCounter) {
+            throw new IllegalStateException("An approximate analysis cannot be snapshotted.");
+        }
+        return new AnalysisSnapshot(wordCounter);
+    }
+
     /**
      * Gets the top N most frequent words.
      */
     public List<Map.Entry<String, Integer>> getTopNWords(int n) {
-        return wordCounter.getTopNWords(n);
+        return statistics.getTopNWords(n);
     }
 
     /**
      * Gets words starting with the given prefix.
      */
     public List<String> getWordsStartingWith(String prefix) {
-        return wordCounter.getWordsStartingWith(prefix);
+        return statistics.getWordsStartingWith(prefix);
     }
 
     /**
@@ -82,6 +243,39 @@ public class TextAnalyzer {
      * Main method demonstrating the text analyzer functionality.
      */
     public static void main(String[] args) {
+        if (args.length >= 1 && args[0].equals("--serve")) {
+            serve(args);
+            return;
+        }
+        if (args.length >= 3 && args[0].equals("--window")) {
+            printWindow(args);
+            return;
+        }
+        if (args.length >= 3 && args[0].equals("--index")) {
+            buildIndex(args);
+            return;
+        }
+        if (args.length >= 3 && (args[0].equals("--search") || args[0].equals("--phrase"))) {
+            searchIndex(args);
+            return;
+        }
+
+        // An explicit charset for the input; the platform charset otherwise
+        Charset charset = Charset.defaultCharset();
+        if (args.length >= 2 && args[0].equals("--charset")) {
+            try {
+                if (!Charset.isSupported(args[1])) {
+                    System.err.println("Error: Unsupported charset: " + args[1]);
+                    System.exit(1);
+                }
+            } catch (IllegalCharsetNameException e) {
+                System.err.println("Error: Illegal charset name: " + args[1]);
+                System.exit(1);
+            }
+            charset = Charset.forName(args[1]);
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+
         String inputFile = "sample_text.txt";
         String outputFile = "output_report.txt";
 
@@ -99,8 +293,21 @@ public class TextAnalyzer {
         System.out.println();
 
         try {
+            // A directory is analyzed as one corpus
+            if (new File(inputFile).isDirectory()) {
+                CorpusAnalyzer corpus = new CorpusAnalyzer(inputFile);
+                corpus.setCharset(charset);
+                corpus.analyze();
+                corpus.printReport();
+                corpus.exportReport(outputFile);
+                if (args.length >= 3) {
+                    corpus.exportDocumentReports(args[2]);
+                }
+                return;
+            }
+
             // Create and run analyzer
-            TextAnalyzer analyzer = new TextAnalyzer(inputFile);
+            TextAnalyzer analyzer = new TextAnalyzer(inputFile, charset);
             analyzer.analyze();
 
             // Print full report
@@ -130,14 +337,13 @@ public class TextAnalyzer {
                 String prefix = prefixes[i];
                 System.out.println();
                 System.out.println("Words starting with '" + prefix + "':");
-                List<String> words = analyzer.getWordsStartingWith(prefix);
+                List<Map.Entry<String, Integer>> words = analyzer.getWordCounter().getWordCountsStartingWith(prefix);
                 if (words.isEmpty()) {
                     System.out.println("  No words found.");
                 } else {
                     for (int j = 0; j < words.size(); j++) {
-                        String word = words.get(j);
-                        int count = analyzer.getWordCounter().getWordCount(word);
-                        System.out.println("  - " + word + " (" + count + ")");
+                        Map.Entry<String, Integer> entry = words.get(j);
+                        System.out.println("  - " + entry.getKey() + " (" + entry.getValue() + ")");
                     }
                 }
             }
@@ -152,4 +358,142 @@ public class TextAnalyzer {
             System.exit(1);
         }
     }
+
+    /**
+     * Analyzes a file and keeps its counts resident behind a QueryServer:
+     * TextAnalyzer --serve [input_file] [port]
+     */
+    private static void serve(String[] args) {
+        String inputFile = args.length >= 2 ? args[1] : "sample_text.txt";
+        int port = args.length >= 3 ? parseArgument(args[2], "Port", 0, 65535) : 8080;
+        try {
+            TextAnalyzer analyzer = new TextAnalyzer(inputFile);
+            analyzer.analyze();
+            QueryServer server = new QueryServer(analyzer.snapshot(), port);
+            server.start();
+            String base = "http://localhost:" + server.getPort();
+            System.out.println("Serving " + inputFile + " on " + base);
+            System.out.println("  " + base + "/count?word=data");
+            System.out.println("  " + base + "/top?n=10");
+            System.out.println("  " + base + "/prefix?prefix=pro");
+            System.out.println("  " + base + "/metrics");
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parses a whole-number argument, or prints an error and exits if it is not
+     * a number from min to max.
+     */
+    private static int parseArgument(String value, String name, int min, int max) {
+        try {
+            long parsed = Long.parseLong(value);
+            if (parsed >= min && parsed <= max) {
+                return (int) parsed;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        System.err.println("Error: " + name + " must be a number from " + min + " to " + max + ": " + value);
+        System.exit(1);
+        return min;
+    }
+
+    /**
+     * Prints the top words of the last minutes of a timestamped log:
+     * TextAnalyzer --window <minutes> <log_file> [n]
+     */
+    private static void printWindow(String[] args) {
+        long windowMillis = parseArgument(args[1], "Window minutes", 1, Integer.MAX_VALUE) * 60L * 1000;
+        int n = args.length >= 4 ? parseArgument(args[3], "Word count", 1, Integer.MAX_VALUE) : 10;
+        // 60 buckets, so the window moves in steps of 1/60 of its length
+        WindowedWordCounter counter = new WindowedWordCounter(windowMillis, windowMillis / 60);
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(args[2]), UTF_8));
+            counter.processLines(reader);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // Nothing left to read
+                }
+            }
+        }
+
+        if (counter.getWindowEnd() == Long.MIN_VALUE) {
+            System.out.println("No timestamped lines found in " + args[2]);
+            return;
+        }
+        System.out.println("Top " + n + " words from " + Instant.ofEpochMilli(counter.getWindowStart())
+                + " to " + Instant.ofEpochMilli(counter.getWindowEnd()) + ":");
+        List<Map.Entry<String, Integer>> top = counter.getTopNWords(n);
+        for (int i = 0; i < top.size(); i++) {
+            System.out.println("  " + top.get(i).getKey() + ": " + top.get(i).getValue());
+        }
+    }
+
+    /**
+     * Builds an inverted index over files and every file under directories:
+     * TextAnalyzer --index <index_file> <file_or_directory>...
+     */
+    private static void buildIndex(String[] args) {
+        try {
+            InvertedIndexBuilder builder = new InvertedIndexBuilder();
+            for (int i = 2; i < args.length; i++) {
+                if (new File(args[i]).isDirectory()) {
+                    List<String> files = CorpusAnalyzer.findFiles(args[i]);
+                    for (int j = 0; j < files.size(); j++) {
+                        builder.addFile(files.get(j));
+                    }
+                } else {
+                    builder.addFile(args[i]);
+                }
+            }
+            InvertedIndexFile.write(builder, args[1]);
+            System.out.println("Indexed " + builder.getDocumentCount() + " documents, "
+                    + builder.getTermCount() + " terms into " + args[1]);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Lists the documents containing all words of a query, or a phrase:
+     * TextAnalyzer --search <index_file> <words>
+     * TextAnalyzer --phrase <index_file> <phrase>
+     */
+    private static void searchIndex(String[] args) {
+        StringBuilder query = new StringBuilder();
+        for (int i = 2; i < args.length; i++) {
+            query.append(args[i]).append(' ');
+        }
+        try {
+            InvertedIndexFile index = InvertedIndexFile.open(args[1]);
+            if (args[0].equals("--search")) {
+                List<String> documents = index.getDocumentsContainingAll(query.toString());
+                for (int i = 0; i < documents.size(); i++) {
+                    System.out.println(documents.get(i));
+                }
+                System.out.println(documents.size() + " documents");
+            } else {
+                Map<String, int[]> matches = index.getPhraseMatches(query.toString());
+                for (Map.Entry<String, int[]> match : matches.entrySet()) {
+                    System.out.println(match.getKey() + ": " + match.getValue().length + " at word positions "
+                            + Arrays.toString(match.getValue()));
+                }
+                System.out.println(matches.size() + " documents");
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
 }
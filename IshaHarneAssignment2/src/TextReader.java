@@ -1,17 +1,76 @@
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Reads and normalizes text file content.
  * Handles file I/O and text preprocessing.
+ *
+ * The file is decoded with the reader's charset, the platform charset unless
+ * one is given. A byte order mark at the start of the file overrides it and is
+ * not part of the text. Malformed or unmappable input is replaced with U+FFFD
+ * by default, or reported as an error, or dropped.
  */
 public class TextReader {
+    /** Size of the direct buffer that tokenize() reads the file through. */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    // Byte order marks with their charsets, the UTF-32LE mark before the
+    // UTF-16LE mark it starts with
+    private static final byte[][] BYTE_ORDER_MARKS = {
+        {0x00, 0x00, (byte) 0xFE, (byte) 0xFF},
+        {(byte) 0xFF, (byte) 0xFE, 0x00, 0x00},
+        {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF},
+        {(byte) 0xFE, (byte) 0xFF},
+        {(byte) 0xFF, (byte) 0xFE}
+    };
+    private static final String[] BYTE_ORDER_MARK_CHARSETS = {
+        "UTF-32BE", "UTF-32LE", "UTF-8", "UTF-16BE", "UTF-16LE"
+    };
+
     private String filePath;
+    private Charset charset;
+    private CodingErrorAction malformedInputAction;
+    private int chunkSize;
     private String normalizedContent;
 
     public TextReader(String filePath) {
+        this(filePath, Charset.defaultCharset());
+    }
+
+    /**
+     * Creates a reader that decodes the file with the given charset, replacing
+     * malformed input.
+     */
+    public TextReader(String filePath, Charset charset) {
+        this(filePath, charset, CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Creates a reader that decodes the file with the given charset and handles
+     * malformed or unmappable input with the given action.
+     */
+    public TextReader(String filePath, Charset charset, CodingErrorAction malformedInputAction) {
+        if (charset == null || malformedInputAction == null) {
+            throw new IllegalArgumentException("Charset and malformed input action are required");
+        }
         this.filePath = filePath;
+        this.charset = charset;
+        this.malformedInputAction = malformedInputAction;
+        this.chunkSize = DEFAULT_CHUNK_SIZE;
         this.normalizedContent = "";
     }
 
@@ -23,7 +82,15 @@ public class TextReader {
         BufferedReader reader = null;
 
         try {
-            reader = new BufferedReader(new FileReader(filePath));
+            InputStream in = new BufferedInputStream(new FileInputStream(filePath));
+            try {
+                int mark = skipByteOrderMark(in);
+                reader = new BufferedReader(new InputStreamReader(in, newDecoder(mark)));
+            } finally {
+                if (reader == null) {
+                    in.close();
+                }
+            }
             String line;
             while ((line = reader.readLine()) != null) {
                 content.append(line).append(" ");
@@ -36,6 +103,164 @@ public class TextReader {
         return content.toString();
     }
 
+    /**
+     * Reads the raw bytes of the file without decoding them.
+     */
+    public ByteBuffer readBytes() throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(Paths.get(filePath)));
+    }
+
+    /**
+     * Decodes the file chunk by chunk and passes its words to the sink, giving
+     * the same words as tokenizing readFile(). The file is read through one
+     * direct buffer of the chunk size, and only the decoded chunk is held in
+     * memory, so files of any size are tokenized in constant memory. A word
+     * split between two chunks is carried over to the next one.
+     */
+    public void tokenize(TokenSink sink) throws IOException {
+        TextTokenizer tokenizer = new TextTokenizer();
+        FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        try {
+            int mark = byteOrderMark(channel);
+            channel.position(mark < 0 ? 0 : BYTE_ORDER_MARKS[mark].length);
+            CharsetDecoder decoder = newDecoder(mark);
+            ByteBuffer bytes = ByteBuffer.allocateDirect(chunkSize);
+            CharBuffer chars = CharBuffer.allocate((int) Math.ceil(chunkSize * (double) decoder.maxCharsPerByte()));
+            // File offset of the next byte to decode, for error messages
+            long offset = channel.position();
+            boolean endOfInput = false;
+
+            while (!endOfInput) {
+                endOfInput = channel.read(bytes) < 0;
+                bytes.flip();
+                CoderResult result;
+                do {
+                    int start = bytes.position();
+                    result = decoder.decode(bytes, chars, endOfInput);
+                    offset += bytes.position() - start;
+                    if (result.isError()) {
+                        throw decodingError(result, offset, decoder.charset());
+                    }
+                    if (result.isOverflow()) {
+                        chars = tokenizeCompleteRuns(tokenizer, chars, sink);
+                    }
+                } while (result.isOverflow());
+                bytes.compact();
+            }
+
+            while (decoder.flush(chars).isOverflow()) {
+                chars = tokenizeCompleteRuns(tokenizer, chars, sink);
+            }
+            chars.flip();
+            tokenizer.tokenize(chars, 0, chars.remaining(), sink);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Tokenizes the decoded characters up to the last run boundary and keeps the
+     * unfinished run at the start of the buffer. A run longer than the buffer
+     * is kept in a buffer twice the size instead.
+     */
+    private static CharBuffer tokenizeCompleteRuns(TextTokenizer tokenizer, CharBuffer chars, TokenSink sink) {
+        chars.flip();
+        int end = chars.limit();
+        while (end > 0 && !TextTokenizer.isRunBoundary(chars.get(end - 1))) {
+            end--;
+        }
+        if (end == 0) {
+            CharBuffer larger = CharBuffer.allocate(chars.capacity() * 2);
+            larger.put(chars);
+            return larger;
+        }
+        tokenizer.tokenize(chars, 0, end, sink);
+        chars.position(end);
+        chars.compact();
+        return chars;
+    }
+
+    private IOException decodingError(CoderResult result, long offset, Charset decoded) {
+        String problem = result.isMalformed() ? "Malformed" : "Unmappable";
+        return new IOException(problem + " " + decoded.name() + " input at byte " + offset + " of " + filePath);
+    }
+
+    /**
+     * Gets the charset the file is decoded with: the one given by its byte
+     * order mark if it starts with one, otherwise the reader's charset.
+     */
+    public Charset detectCharset() throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        try {
+            int mark = byteOrderMark(channel);
+            return mark < 0 ? charset : Charset.forName(BYTE_ORDER_MARK_CHARSETS[mark]);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Finds the byte order mark at the start of the file, as an index into
+     * BYTE_ORDER_MARKS, or -1 if the file does not start with one.
+     */
+    private static int byteOrderMark(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(4);
+        while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+            // Keep reading until four bytes or the end of the file
+        }
+        return byteOrderMark(head.array(), head.position());
+    }
+
+    private static int byteOrderMark(byte[] head, int length) {
+        for (int i = 0; i < BYTE_ORDER_MARKS.length; i++) {
+            byte[] mark = BYTE_ORDER_MARKS[i];
+            if (length >= mark.length && startsWith(head, mark)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] head, byte[] mark) {
+        for (int i = 0; i < mark.length; i++) {
+            if (head[i] != mark[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads past the byte order mark at the start of the stream, if any.
+     * Returns the mark's index, or -1 if there is none.
+     */
+    private static int skipByteOrderMark(InputStream in) throws IOException {
+        in.mark(4);
+        byte[] head = new byte[4];
+        int length = 0;
+        int read;
+        while (length < head.length && (read = in.read(head, length, head.length - length)) > 0) {
+            length += read;
+        }
+        int mark = byteOrderMark(head, length);
+        in.reset();
+        if (mark >= 0) {
+            in.skip(BYTE_ORDER_MARKS[mark].length);
+        }
+        return mark;
+    }
+
+    /**
+     * Creates a decoder for the byte order mark's charset, or for the reader's
+     * charset when there is no mark.
+     */
+    private CharsetDecoder newDecoder(int mark) {
+        Charset decoded = mark < 0 ? charset : Charset.forName(BYTE_ORDER_MARK_CHARSETS[mark]);
+        return decoded.newDecoder()
+                .onMalformedInput(malformedInputAction)
+                .onUnmappableCharacter(malformedInputAction);
+    }
+
     /**
      * Normalizes text by converting to lowercase and removing punctuation.
      * Keeps only alphanumeric characters and spaces.
@@ -93,6 +318,30 @@ public class TextReader {
         return filePath;
     }
 
+    /**
+     * Gets the charset the file is decoded with when it has no byte order mark.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Gets how malformed or unmappable input is handled.
+     */
+    public CodingErrorAction getMalformedInputAction() {
+        return malformedInputAction;
+    }
+
+    /**
+     * Sets the size in bytes of the buffer tokenize() reads the file through.
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 16) {
+            throw new IllegalArgumentException("Chunk size must be at least 16 bytes");
+        }
+        this.chunkSize = chunkSize;
+    }
+
     /**
      * Gets the normalized content (after readAndNormalize is called).
      */
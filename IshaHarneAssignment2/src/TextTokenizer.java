@@ -0,0 +1,247 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * Single-pass tokenizer that lowercases, strips punctuation and splits words
+ * straight from raw text, without building a normalized copy of the document.
+ * Produces exactly the words that TextReader.normalizeText followed by a
+ * whitespace split would produce.
+ *
+ * Text is processed in whitespace-separated runs. Runs of plain ASCII are
+ * lowercased character by character; runs containing other characters are
+ * lowercased with String.toLowerCase so that context-sensitive rules (such as
+ * the Greek final sigma) behave as they do on the whole document.
+ *
+ * UTF-8 bytes can be tokenized directly, without decoding the text first:
+ * ASCII runs are classified byte by byte through a lookup table, and only runs
+ * containing a non-ASCII byte are decoded and take the Unicode path.
+ */
+public class TextTokenizer {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Byte classes for the ASCII path, indexed by unsigned byte value
+    private static final byte SEPARATOR = 0;
+    private static final byte KEEP = 1;
+    private static final byte UPPER_CASE = 2;
+    private static final byte[] ASCII_CLASSES = new byte[256];
+
+    static {
+        for (int c = '0'; c <= '9'; c++) {
+            ASCII_CLASSES[c] = KEEP;
+        }
+        for (int c = 'a'; c <= 'z'; c++) {
+            ASCII_CLASSES[c] = KEEP;
+        }
+        for (int c = 'A'; c <= 'Z'; c++) {
+            ASCII_CLASSES[c] = UPPER_CASE;
+        }
+    }
+
+    private char[] word;
+    private byte[] runBytes;
+    private boolean asciiFastPath;
+
+    public TextTokenizer() {
+        this.word = new char[64];
+        this.runBytes = new byte[256];
+        // Turkish and Azeri lowercase the ASCII letter I differently
+        String language = Locale.getDefault().getLanguage();
+        this.asciiFastPath = !language.equals("tr") && !language.equals("az");
+    }
+
+    /**
+     * Splits raw text into lowercased words and passes each one to the sink.
+     */
+    public void tokenize(CharSequence text, TokenSink sink) {
+        tokenize(text, 0, text.length(), sink);
+    }
+
+    /**
+     * Splits text[start, end) into lowercased words and passes each one to the sink.
+     * The range must start and end at whitespace or at the ends of the text.
+     */
+    public void tokenize(CharSequence text, int start, int end, TokenSink sink) {
+        int i = start;
+
+        while (i < end) {
+            // Skip the whitespace between runs
+            while (i < end && isRunBoundary(text.charAt(i))) {
+                i++;
+            }
+            int runStart = i;
+            boolean ascii = true;
+            while (i < end) {
+                char c = text.charAt(i);
+                if (isRunBoundary(c)) {
+                    break;
+                }
+                if (c >= 128) {
+                    ascii = false;
+                }
+                i++;
+            }
+
+            if (runStart == i) {
+                continue;
+            }
+            if (ascii && asciiFastPath) {
+                tokenizeAsciiRun(text, runStart, i, sink);
+            } else {
+                String lowercased = text.subSequence(runStart, i).toString().toLowerCase();
+                tokenizeLowercasedRun(lowercased, sink);
+            }
+        }
+    }
+
+    /**
+     * Splits UTF-8 text from the buffer's position to its limit into lowercased
+     * words. Gives the same words as decoding the bytes as UTF-8 and calling
+     * tokenize on the characters; the buffer's position is not changed.
+     */
+    public void tokenize(ByteBuffer utf8, TokenSink sink) {
+        tokenize(utf8, utf8.position(), utf8.limit(), sink);
+    }
+
+    /**
+     * Splits the UTF-8 bytes utf8[start, end) into lowercased words. The range
+     * must start and end at whitespace or at the ends of the text.
+     */
+    public void tokenize(ByteBuffer utf8, int start, int end, TokenSink sink) {
+        int i = start;
+
+        while (i < end) {
+            while (i < end && isRunBoundary(utf8.get(i))) {
+                i++;
+            }
+            int runStart = i;
+            boolean ascii = true;
+            while (i < end) {
+                byte b = utf8.get(i);
+                if (isRunBoundary(b)) {
+                    break;
+                }
+                // Every byte of a multi-byte UTF-8 sequence has the high bit set
+                if (b < 0) {
+                    ascii = false;
+                }
+                i++;
+            }
+
+            if (runStart == i) {
+                continue;
+            }
+            if (ascii && asciiFastPath) {
+                tokenizeAsciiRun(utf8, runStart, i, sink);
+            } else {
+                tokenizeLowercasedRun(decodeRun(utf8, runStart, i).toLowerCase(), sink);
+            }
+        }
+    }
+
+    /**
+     * Splits an ASCII byte run, lowercasing letters by setting the case bit.
+     */
+    private void tokenizeAsciiRun(ByteBuffer utf8, int start, int end, TokenSink sink) {
+        int wordLength = 0;
+        for (int i = start; i < end; i++) {
+            byte b = utf8.get(i);
+            byte kind = ASCII_CLASSES[b & 0xFF];
+            if (kind == KEEP) {
+                wordLength = append(wordLength, (char) b);
+            } else if (kind == UPPER_CASE) {
+                wordLength = append(wordLength, (char) (b | 0x20));
+            } else if (wordLength > 0) {
+                sink.acceptToken(word, 0, wordLength);
+                wordLength = 0;
+            }
+        }
+        if (wordLength > 0) {
+            sink.acceptToken(word, 0, wordLength);
+        }
+    }
+
+    /**
+     * Decodes one run of UTF-8 bytes. Malformed bytes become U+FFFD, as they do
+     * when the whole text is decoded, since a run never splits a byte sequence.
+     */
+    private String decodeRun(ByteBuffer utf8, int start, int end) {
+        int length = end - start;
+        if (utf8.hasArray()) {
+            return new String(utf8.array(), utf8.arrayOffset() + start, length, UTF_8);
+        }
+        if (length > runBytes.length) {
+            runBytes = new byte[Math.max(length, runBytes.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            runBytes[i] = utf8.get(start + i);
+        }
+        return new String(runBytes, 0, length, UTF_8);
+    }
+
+    /**
+     * Splits an ASCII run, lowercasing letters by setting the case bit.
+     */
+    private void tokenizeAsciiRun(CharSequence text, int start, int end, TokenSink sink) {
+        int wordLength = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                wordLength = append(wordLength, c);
+            } else if (c >= 'A' && c <= 'Z') {
+                wordLength = append(wordLength, (char) (c | 0x20));
+            } else if (wordLength > 0) {
+                sink.acceptToken(word, 0, wordLength);
+                wordLength = 0;
+            }
+        }
+        if (wordLength > 0) {
+            sink.acceptToken(word, 0, wordLength);
+        }
+    }
+
+    /**
+     * Splits an already lowercased run on every character that is not a letter or digit.
+     */
+    private void tokenizeLowercasedRun(String run, TokenSink sink) {
+        int wordLength = 0;
+        for (int i = 0; i < run.length(); i++) {
+            char c = run.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                wordLength = append(wordLength, c);
+            } else if (wordLength > 0) {
+                sink.acceptToken(word, 0, wordLength);
+                wordLength = 0;
+            }
+        }
+        if (wordLength > 0) {
+            sink.acceptToken(word, 0, wordLength);
+        }
+    }
+
+    private int append(int wordLength, char c) {
+        if (wordLength == word.length) {
+            char[] larger = new char[word.length * 2];
+            System.arraycopy(word, 0, larger, 0, wordLength);
+            word = larger;
+        }
+        word[wordLength] = c;
+        return wordLength + 1;
+    }
+
+    /**
+     * Whitespace that separates runs. None of these characters is cased or
+     * case-ignorable, so lowercasing a run on its own gives the same result as
+     * lowercasing the whole text.
+     */
+    static boolean isRunBoundary(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == '\u000B';
+    }
+
+    /**
+     * The same whitespace as a UTF-8 byte.
+     */
+    static boolean isRunBoundary(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0B;
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * Receives the words produced by TextTokenizer.
+ */
+public interface TokenSink {
+
+    /**
+     * Accepts one lowercased word stored in buffer[offset, offset + length).
+     * The buffer is reused for the next word, so it must not be kept.
+     */
+    void acceptToken(char[] buffer, int offset, int length);
+}
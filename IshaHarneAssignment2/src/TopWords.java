@@ -0,0 +1,173 @@
+/**
+ * Finds the most frequent words of a WordTable, ordered by count descending
+ * and then alphabetically.
+ *
+ * select() runs a bounded heap over the whole table in O(V log k). An instance
+ * keeps a live top k that is updated after every increment while counting; it is
+ * exact because counts only ever grow between rebuilds.
+ */
+class TopWords {
+    private WordTable table;
+    private int[] ids;
+    private int size;
+
+    TopWords(WordTable table, int k) {
+        this.table = table;
+        this.ids = new int[k];
+        this.size = 0;
+    }
+
+    /**
+     * Returns the ids of the k highest ranked words, best first.
+     */
+    static int[] select(WordTable table, int k) {
+        int limit = Math.min(k, table.size());
+        if (limit <= 0) {
+            return new int[0];
+        }
+
+        // Min-heap on rank: the worst of the current top k sits at the root
+        int[] heap = new int[limit];
+        int heapSize = 0;
+        for (int id = 0; id < table.size(); id++) {
+            if (heapSize < limit) {
+                heap[heapSize] = id;
+                siftUp(table, heap, heapSize);
+                heapSize++;
+            } else if (ranksBefore(table, id, heap[0])) {
+                heap[0] = id;
+                siftDown(table, heap, heapSize);
+            }
+        }
+
+        // Pop the worst word repeatedly, filling the result from the back
+        int[] result = new int[limit];
+        for (int i = limit - 1; i >= 0; i--) {
+            result[i] = heap[0];
+            heapSize--;
+            heap[0] = heap[heapSize];
+            siftDown(table, heap, heapSize);
+        }
+        return result;
+    }
+
+    /**
+     * Updates the live top k after the count of a word has been increased.
+     */
+    void update(int id) {
+        if (ids.length == 0) {
+            return;
+        }
+        boolean full = size == ids.length;
+        // Every tracked word ranks at least as high as the last one, so a word
+        // with a lower count is neither tracked nor able to enter
+        if (full && table.count(id) < table.count(ids[size - 1])) {
+            return;
+        }
+
+        int position = -1;
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                position = i;
+                break;
+            }
+        }
+        if (position < 0) {
+            if (!full) {
+                position = size;
+                size++;
+            } else if (ranksBefore(table, id, ids[size - 1])) {
+                position = size - 1;
+            } else {
+                return;
+            }
+            ids[position] = id;
+        }
+
+        // Move the word up past every word it now outranks
+        while (position > 0 && ranksBefore(table, id, ids[position - 1])) {
+            ids[position] = ids[position - 1];
+            position--;
+        }
+        ids[position] = id;
+    }
+
+    /**
+     * Recomputes the live top k from scratch, e.g. after tables were merged.
+     */
+    void rebuild(WordTable newTable) {
+        this.table = newTable;
+        int[] top = select(newTable, ids.length);
+        System.arraycopy(top, 0, ids, 0, top.length);
+        size = top.length;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int capacity() {
+        return ids.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the id of the word at the given rank (0 is the most frequent).
+     */
+    int id(int rank) {
+        return ids[rank];
+    }
+
+    /**
+     * True if word a ranks before word b: higher count, or the same count and
+     * alphabetically first.
+     */
+    static boolean ranksBefore(WordTable table, int a, int b) {
+        int countA = table.count(a);
+        int countB = table.count(b);
+        if (countA != countB) {
+            return countA > countB;
+        }
+        return table.word(a).compareTo(table.word(b)) < 0;
+    }
+
+    private static void siftUp(WordTable table, int[] heap, int index) {
+        int id = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!ranksBefore(table, heap[parent], id)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = id;
+    }
+
+    private static void siftDown(WordTable table, int[] heap, int heapSize) {
+        if (heapSize == 0) {
+            return;
+        }
+        int index = 0;
+        int id = heap[0];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            // Pick the worse-ranked child
+            if (child + 1 < heapSize && ranksBefore(table, heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!ranksBefore(table, id, heap[child])) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = id;
+    }
+}
@@ -0,0 +1,367 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts words over a sliding time window, e.g. the top words of the last
+ * five minutes of a log. The window is divided into a ring of equal time
+ * buckets. A word is counted both in the window totals and in the bucket of
+ * its timestamp; when time moves past a bucket, the bucket's counts are
+ * subtracted from the totals and the bucket is reused. Each word occurrence is
+ * therefore added once and subtracted once, and queries read the totals
+ * directly.
+ *
+ * The window ends with the bucket of the latest timestamp seen and covers
+ * windowMillis / bucketMillis buckets. Words stamped earlier than that are
+ * dropped; words stamped earlier than the latest time but still inside the
+ * window are counted in their own bucket.
+ *
+ * Words are filtered exactly like WordCounter does.
+ */
+public class WindowedWordCounter implements TokenSink {
+    // Rebuild the totals table once most of its words have expired
+    private static final int MIN_COMPACT_SIZE = 4096;
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final StopWordFilter stopWordFilter;
+    private final TextTokenizer tokenizer;
+
+    // Counts over the whole window; words whose count fell to 0 stay until compaction
+    private WordTable window;
+    private int liveWords;
+    private long totalWords;
+
+    // Ring of buckets: window word id -> count, and the bucket number each slot holds
+    private final LongIntMap[] buckets;
+    private final long[] bucketNumbers;
+    private long latestBucket;
+
+    // Slot receiving the words of the current timestamp, or -1 if they are too old
+    private int currentSlot;
+    private long droppedWords;
+
+    // Timestamp text of the last line read and its parsed value
+    private String lastTimestampText;
+    private long lastTimestamp;
+
+    /**
+     * Creates a counter for a window of windowMillis, kept in buckets of
+     * bucketMillis. The window must be a whole number of buckets.
+     */
+    public WindowedWordCounter(long windowMillis, long bucketMillis) {
+        this(windowMillis, bucketMillis, new WordCounter().getStopWordFilter());
+    }
+
+    public WindowedWordCounter(long windowMillis, long bucketMillis, StopWordFilter stopWordFilter) {
+        if (bucketMillis <= 0 || windowMillis < bucketMillis || windowMillis % bucketMillis != 0) {
+            throw new IllegalArgumentException("The window (" + windowMillis
+                    + " ms) must be a positive multiple of the bucket size (" + bucketMillis + " ms)");
+        }
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = (int) (windowMillis / bucketMillis);
+        this.stopWordFilter = stopWordFilter;
+        this.tokenizer = new TextTokenizer();
+        this.window = new WordTable();
+        this.buckets = new LongIntMap[bucketCount];
+        this.bucketNumbers = new long[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new LongIntMap(64);
+            bucketNumbers[i] = Long.MIN_VALUE;
+        }
+        this.latestBucket = Long.MIN_VALUE;
+        this.currentSlot = -1;
+    }
+
+    /**
+     * Counts the words of raw text stamped with the given time (milliseconds
+     * since the epoch), after moving the window forward if the time is newer
+     * than any seen so far.
+     */
+    public void processText(long timestampMillis, String rawText) {
+        setTime(timestampMillis);
+        tokenizer.tokenize(rawText, this);
+    }
+
+    /**
+     * Counts the words of one log line that starts with a timestamp:
+     * 13-digit milliseconds or 10-digit seconds since the epoch, an ISO-8601 date-time such as
+     * 2024-05-01T12:00:00Z (UTC when no offset is given), or "2024-05-01 12:00:00".
+     * A line without a timestamp, such as a stack trace line or one that starts
+     * with a short number like "404 not found", is counted at the
+     * time of the line before it; lines before the first timestamp are dropped.
+     */
+    public void processLine(String line) {
+        int textStart = readTimestamp(line);
+        if (lastTimestampText == null) {
+            return;
+        }
+        setTime(lastTimestamp);
+        tokenizer.tokenize(line, textStart, line.length(), this);
+    }
+
+    /**
+     * Counts every line from the reader, in order, until it is exhausted.
+     */
+    public void processLines(BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            processLine(line);
+        }
+    }
+
+    /**
+     * Moves the window forward to end at the given time without counting
+     * anything, expiring the buckets that fall out of it.
+     */
+    public void advanceTo(long timestampMillis) {
+        long bucket = Math.floorDiv(timestampMillis, bucketMillis);
+        if (latestBucket != Long.MIN_VALUE && bucket <= latestBucket) {
+            return;
+        }
+        latestBucket = bucket;
+        for (int slot = 0; slot < bucketCount; slot++) {
+            if (bucketNumbers[slot] != Long.MIN_VALUE && bucketNumbers[slot] <= bucket - bucketCount) {
+                expire(slot);
+            }
+        }
+        compactIfSparse();
+    }
+
+    /**
+     * Filters and counts one word produced by TextTokenizer at the current time.
+     */
+    public void acceptToken(char[] buffer, int offset, int length) {
+        if (!stopWordFilter.accepts(buffer, offset, length)) {
+            return;
+        }
+        if (currentSlot < 0) {
+            droppedWords++;
+            return;
+        }
+        int id = window.add(buffer, offset, length, 1);
+        if (window.count(id) == 1) {
+            liveWords++;
+        }
+        buckets[currentSlot].add(id, 1);
+        totalWords++;
+    }
+
+    /**
+     * Returns the n most frequent words in the window sorted by count
+     * descending, then alphabetically.
+     */
+    public List<Map.Entry<String, Integer>> getTopNWords(int n) {
+        int[] ids = TopWords.select(window, Math.min(n, liveWords));
+        List<Map.Entry<String, Integer>> topN = new ArrayList<Map.Entry<String, Integer>>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            topN.add(new AbstractMap.SimpleImmutableEntry<String, Integer>(window.word(ids[i]), window.count(ids[i])));
+        }
+        return topN;
+    }
+
+    /**
+     * Gets the frequency of a word in the window.
+     */
+    public int getWordCount(String word) {
+        int id = window.find(word.toLowerCase());
+        return id >= 0 ? window.count(id) : 0;
+    }
+
+    /**
+     * Gets the number of counted words in the window.
+     */
+    public long getTotalWordCount() {
+        return totalWords;
+    }
+
+    /**
+     * Gets the number of distinct words in the window.
+     */
+    public int getUniqueWordCount() {
+        return liveWords;
+    }
+
+    /**
+     * Gets the number of words dropped because their timestamp was already
+     * outside the window.
+     */
+    public long getDroppedWordCount() {
+        return droppedWords;
+    }
+
+    /**
+     * Gets the start of the window (inclusive) in milliseconds since the epoch,
+     * or Long.MIN_VALUE before anything was counted.
+     */
+    public long getWindowStart() {
+        if (latestBucket == Long.MIN_VALUE) {
+            return Long.MIN_VALUE;
+        }
+        return (latestBucket - bucketCount + 1) * bucketMillis;
+    }
+
+    /**
+     * Gets the end of the window (exclusive) in milliseconds since the epoch,
+     * or Long.MIN_VALUE before anything was counted.
+     */
+    public long getWindowEnd() {
+        if (latestBucket == Long.MIN_VALUE) {
+            return Long.MIN_VALUE;
+        }
+        return (latestBucket + 1) * bucketMillis;
+    }
+
+    /**
+     * Moves the window forward if needed and selects the bucket that the
+     * words of the given time are counted in.
+     */
+    private void setTime(long timestampMillis) {
+        advanceTo(timestampMillis);
+        long bucket = Math.floorDiv(timestampMillis, bucketMillis);
+        if (bucket <= latestBucket - bucketCount) {
+            currentSlot = -1;
+            return;
+        }
+        int slot = (int) Math.floorMod(bucket, (long) bucketCount);
+        // A slot's previous bucket is at least a window older, so it has already expired
+        bucketNumbers[slot] = bucket;
+        currentSlot = slot;
+    }
+
+    /**
+     * Subtracts a bucket's counts from the window totals and empties it.
+     */
+    private void expire(int slot) {
+        LongIntMap bucket = buckets[slot];
+        for (int i = 0; i < bucket.capacity(); i++) {
+            int count = bucket.countAt(i);
+            if (count == 0) {
+                continue;
+            }
+            int id = (int) bucket.keyAt(i);
+            window.addCount(id, -count);
+            if (window.count(id) == 0) {
+                liveWords--;
+            }
+            totalWords -= count;
+        }
+        bucket.clear();
+        bucketNumbers[slot] = Long.MIN_VALUE;
+    }
+
+    /**
+     * Rebuilds the totals table without the words whose count fell to 0 once
+     * they make up more than half of it, renumbering the buckets' words.
+     */
+    private void compactIfSparse() {
+        int size = window.size();
+        if (size < MIN_COMPACT_SIZE || size <= 2 * liveWords) {
+            return;
+        }
+        WordTable compacted = new WordTable(liveWords);
+        int[] newIds = new int[size];
+        for (int id = 0; id < size; id++) {
+            int count = window.count(id);
+            newIds[id] = count > 0 ? compacted.add(window.word(id), count) : -1;
+        }
+        for (int slot = 0; slot < bucketCount; slot++) {
+            LongIntMap bucket = buckets[slot];
+            if (bucket.size() == 0) {
+                continue;
+            }
+            LongIntMap renumbered = new LongIntMap(bucket.size() * 2);
+            for (int i = 0; i < bucket.capacity(); i++) {
+                int count = bucket.countAt(i);
+                if (count > 0) {
+                    renumbered.add(newIds[(int) bucket.keyAt(i)], count);
+                }
+            }
+            buckets[slot] = renumbered;
+        }
+        window = compacted;
+    }
+
+    /**
+     * Parses the timestamp at the start of the line into lastTimestamp and
+     * returns the index where the rest of the line starts, or 0 if the line
+     * does not start with a timestamp.
+     */
+    private int readTimestamp(String line) {
+        // Consecutive log lines usually share their timestamp text
+        if (lastTimestampText != null && line.startsWith(lastTimestampText)) {
+            int length = lastTimestampText.length();
+            if (length == line.length() || TextTokenizer.isRunBoundary(line.charAt(length))) {
+                return length;
+            }
+        }
+        int end = fieldEnd(line, 0);
+        if (end == 0) {
+            return 0;
+        }
+
+        String field = line.substring(0, end);
+        long timestamp = parseTimestamp(field);
+        if (timestamp == Long.MIN_VALUE && end < line.length()) {
+            // Date and time separated by a space
+            int timeEnd = fieldEnd(line, end + 1);
+            if (timeEnd > end + 1) {
+                timestamp = parseTimestamp(field + "T" + line.substring(end + 1, timeEnd));
+                end = timeEnd;
+            }
+        }
+        if (timestamp == Long.MIN_VALUE) {
+            return 0;
+        }
+        lastTimestampText = line.substring(0, end);
+        lastTimestamp = timestamp;
+        return end;
+    }
+
+    private static int fieldEnd(String line, int start) {
+        int end = start;
+        while (end < line.length() && !TextTokenizer.isRunBoundary(line.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Parses epoch milliseconds (13 digits), epoch seconds (10 digits) or an
+     * ISO-8601 date-time, or returns Long.MIN_VALUE. Numbers of any other
+     * length, such as status codes or counts at the start of a message, are
+     * not timestamps.
+     */
+    static long parseTimestamp(String text) {
+        boolean digits = text.length() == 10 || text.length() == 13;
+        for (int i = 0; i < text.length() && digits; i++) {
+            digits = text.charAt(i) >= '0' && text.charAt(i) <= '9';
+        }
+        if (digits) {
+            long value = Long.parseLong(text);
+            return text.length() == 13 ? value : value * 1000L;
+        }
+        if (text.indexOf('T') < 0) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            TemporalAccessor parsed = DateTimeFormatter.ISO_DATE_TIME.parse(text);
+            if (parsed.isSupported(ChronoField.OFFSET_SECONDS)) {
+                return OffsetDateTime.from(parsed).toInstant().toEpochMilli();
+            }
+            return LocalDateTime.from(parsed).toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+}
@@ -1,33 +1,88 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Tokenizes text and counts word frequencies.
  * Handles stop word filtering and word statistics.
  */
-public class WordCounter {
-    private Map<String, Integer> wordFrequency;
-    private List<String> allWords;
-    private Set<String> stopWords;
+public class WordCounter implements TokenSink, WordStatistics {
+    // Word counts, keyed directly by tokenizer buffer slices
+    private WordTable wordTable;
+    // Stop words and minimum length, checked on tokenizer slices before a String is created
+    private StopWordFilter stopWordFilter;
     private static final int MIN_WORD_LENGTH = 3;
 
+    // Running statistics, updated as each word is counted so that memory
+    // scales with the vocabulary rather than with the length of the text
+    private long totalWords;
+    private long totalCharacters;
+    private long[] lengthCounts;
+    private String longestWord;
+
+    // Optional top words maintained during counting (null when not tracked)
+    private TopWords liveTopWords;
+
+    // Sorted vocabulary for prefix queries, built lazily and dropped on any change
+    private PrefixIndex prefixIndex;
+
+    // Most frequent word, kept current while counting and recomputed lazily after a merge
+    private String mostFrequentWord;
+    private int mostFrequentCount;
+    private boolean mostFrequentValid;
+
+    // Optional counts of consecutive word n-grams (null when not counted)
+    private NGramCounter nGramCounter;
+
+    // Texts shorter than this are counted by a single parallel worker
+    private static final int PARALLEL_SEGMENT_SIZE = 256 * 1024;
+
     public WordCounter() {
-        this.wordFrequency = new HashMap<String, Integer>();
-        this.allWords = new ArrayList<String>();
-        this.stopWords = initializeStopWords();
+        this(new StopWordFilter(initializeStopWords(), MIN_WORD_LENGTH));
+    }
+
+    /**
+     * Creates a counter that filters words with the given stop word filter,
+     * e.g. one loaded with StopWordFilter.load.
+     */
+    public WordCounter(StopWordFilter stopWordFilter) {
+        this.wordTable = new WordTable();
+        this.lengthCounts = new long[32];
+        this.longestWord = "";
+        this.mostFrequentWord = "";
+        this.mostFrequentValid = true;
+        this.stopWordFilter = stopWordFilter;
+    }
+
+    /**
+     * Creates an empty counter that shares another counter's stop word filter.
+     */
+    WordCounter(WordCounter template) {
+        this.wordTable = new WordTable();
+        this.lengthCounts = new long[32];
+        this.longestWord = "";
+        this.mostFrequentWord = "";
+        this.mostFrequentValid = true;
+        this.stopWordFilter = template.stopWordFilter;
     }
 
     /**
      * Initializes the set of stop words to be excluded.
      * Contains at least 20 common stop words.
      */
-    private Set<String> initializeStopWords() {
+    private static Set<String> initializeStopWords() {
         Set<String> stops = new HashSet<String>();
         // Required 20 stop words
         stops.add("the");
@@ -69,9 +124,14 @@ public class WordCounter {
      * Ignores words with fewer than 3 characters and stop words.
      */
     public void processText(String normalizedText) {
-        wordFrequency.clear();
-        allWords.clear();
+        clear();
+        addText(normalizedText);
+    }
 
+    /**
+     * Tokenizes more normalized text, adding to the existing counts.
+     */
+    void addText(String normalizedText) {
         String[] tokens = normalizedText.split("\\s+");
 
         for (int i = 0; i < tokens.length; i++) {
@@ -81,158 +141,518 @@ public class WordCounter {
                 continue;
             }
 
-            // Skip words shorter than minimum length
-            if (token.length() < MIN_WORD_LENGTH) {
+            // Skip words shorter than minimum length and stop words
+            if (!stopWordFilter.accepts(token)) {
                 continue;
             }
 
-            // Skip stop words
-            if (stopWords.contains(token)) {
-                continue;
-            }
+            countWord(token);
+        }
+    }
+
+    /**
+     * Tokenizes raw (not yet normalized) text and counts frequencies in a single
+     * pass, without building an intermediate normalized String. Produces the
+     * same counts as normalizing the text and calling processText.
+     */
+    public void processRawText(String rawText) {
+        clear();
+        new TextTokenizer().tokenize(rawText, this);
+    }
+
+    /**
+     * Tokenizes and counts raw UTF-8 text straight from its bytes, from the
+     * buffer's position to its limit. Produces the same counts as decoding the
+     * bytes and calling processRawText, without building a String of the text.
+     */
+    public void processUtf8Text(ByteBuffer utf8Text) {
+        clear();
+        new TextTokenizer().tokenize(utf8Text, this);
+    }
+
+    /**
+     * Tokenizes and counts the reader's file as it is decoded, chunk by chunk.
+     * Produces the same counts as processRawText(reader.readFile()) in memory
+     * that does not grow with the file.
+     */
+    public void processReader(TextReader reader) throws IOException {
+        clear();
+        reader.tokenize(this);
+    }
+
+    /**
+     * Counts normalized text in parallel on the common ForkJoinPool.
+     * Gives the same results as processText.
+     */
+    public void processTextParallel(String normalizedText) {
+        processTextParallel(normalizedText, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Counts normalized text in parallel on the given pool. The text is split at
+     * whitespace into segments; each worker counts its segment into its own
+     * counter and the partial counts are merged pairwise as the tasks join.
+     */
+    public void processTextParallel(String normalizedText, ForkJoinPool pool) {
+        if (nGramCounter != null) {
+            // N-grams span segment boundaries, so they are counted in one pass
+            processText(normalizedText);
+            return;
+        }
+        WordCounter result = pool.invoke(new CountTask(normalizedText, 0, normalizedText.length(), false));
+        copyFrom(result);
+    }
+
+    /**
+     * Tokenizes and counts raw text in parallel on the common ForkJoinPool.
+     * Gives the same results as processRawText.
+     */
+    public void processRawTextParallel(String rawText) {
+        processRawTextParallel(rawText, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tokenizes and counts raw text in parallel on the given pool.
+     */
+    public void processRawTextParallel(String rawText, ForkJoinPool pool) {
+        if (nGramCounter != null) {
+            processRawText(rawText);
+            return;
+        }
+        WordCounter result = pool.invoke(new CountTask(rawText, 0, rawText.length(), true));
+        copyFrom(result);
+    }
+
+    /**
+     * Replaces this counter's contents with another counter's.
+     */
+    private void copyFrom(WordCounter other) {
+        wordTable = other.wordTable;
+        prefixIndex = null;
+        mostFrequentValid = false;
+        totalWords = other.totalWords;
+        totalCharacters = other.totalCharacters;
+        lengthCounts = other.lengthCounts;
+        longestWord = other.longestWord;
+        if (liveTopWords != null) {
+            liveTopWords.rebuild(wordTable);
+        }
+    }
 
-            allWords.add(token);
+    /**
+     * Counts one segment of text, splitting it in two at whitespace while it is
+     * larger than PARALLEL_SEGMENT_SIZE.
+     */
+    private class CountTask extends RecursiveTask<WordCounter> {
+        private static final long serialVersionUID = 1L;
+
+        private final String text;
+        private final int start;
+        private final int end;
+        private final boolean raw;
+
+        CountTask(String text, int start, int end, boolean raw) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            this.raw = raw;
+        }
+
+        protected WordCounter compute() {
+            if (end - start > PARALLEL_SEGMENT_SIZE) {
+                // Move the split point forward to whitespace so no word is cut in two
+                int middle = start + (end - start) / 2;
+                while (middle < end && !TextTokenizer.isRunBoundary(text.charAt(middle))) {
+                    middle++;
+                }
+                if (middle < end) {
+                    CountTask left = new CountTask(text, start, middle, raw);
+                    CountTask right = new CountTask(text, middle, end, raw);
+                    left.fork();
+                    WordCounter rightResult = right.compute();
+                    WordCounter leftResult = left.join();
+                    // Merge the smaller vocabulary into the larger one
+                    if (leftResult.wordTable.size() >= rightResult.wordTable.size()) {
+                        leftResult.merge(rightResult);
+                        return leftResult;
+                    }
+                    rightResult.merge(leftResult);
+                    return rightResult;
+                }
+            }
 
-            // Update frequency count
-            if (wordFrequency.containsKey(token)) {
-                int currentCount = wordFrequency.get(token);
-                wordFrequency.put(token, currentCount + 1);
+            WordCounter partial = new WordCounter(WordCounter.this);
+            if (raw) {
+                new TextTokenizer().tokenize(text, start, end, partial);
             } else {
-                wordFrequency.put(token, 1);
+                partial.addText(text.substring(start, end));
             }
+            return partial;
+        }
+    }
+
+    /**
+     * Filters and counts one word produced by TextTokenizer.
+     */
+    public void acceptToken(char[] buffer, int offset, int length) {
+        // Skip words shorter than minimum length and stop words
+        if (!stopWordFilter.accepts(buffer, offset, length)) {
+            return;
+        }
+
+        // Update frequency count; a String is only created for a new word
+        int id = wordTable.add(buffer, offset, length, 1);
+        recordOccurrence(id);
+    }
+
+    /**
+     * Records one occurrence of a word that passed filtering.
+     */
+    private void countWord(String token) {
+        int id = wordTable.add(token, 1);
+        recordOccurrence(id);
+    }
+
+    /**
+     * Updates the running statistics for one occurrence of a counted word.
+     */
+    private void recordOccurrence(int id) {
+        int length = wordTable.length(id);
+        prefixIndex = null;
+        totalWords++;
+        totalCharacters += length;
+        if (length >= lengthCounts.length) {
+            lengthCounts = Arrays.copyOf(lengthCounts, Math.max(length + 1, lengthCounts.length * 2));
+        }
+        lengthCounts[length]++;
+        if (length >= longestWord.length()) {
+            updateLongest(wordTable.word(id));
+        }
+        if (mostFrequentValid) {
+            updateMostFrequent(id);
+        }
+        if (liveTopWords != null) {
+            liveTopWords.update(id);
+        }
+        if (nGramCounter != null) {
+            nGramCounter.add(id);
         }
     }
 
     /**
-     * Gets the total count of words (after filtering).
+     * Keeps the longest word seen, breaking ties alphabetically so the result
+     * does not depend on the order in which parallel partial counts are merged.
+     */
+    private void updateLongest(String word) {
+        if (word.length() > longestWord.length()
+                || (word.length() == longestWord.length() && word != longestWord && word.compareTo(longestWord) < 0)) {
+            longestWord = word;
+        }
+    }
+
+    /**
+     * Adds the words counted by another WordCounter to this one.
+     * Used to combine the partial counts of parallel workers.
+     */
+    void merge(WordCounter other) {
+        wordTable.addAll(other.wordTable);
+        prefixIndex = null;
+        mostFrequentValid = false;
+        totalWords += other.totalWords;
+        totalCharacters += other.totalCharacters;
+        if (other.lengthCounts.length > lengthCounts.length) {
+            lengthCounts = Arrays.copyOf(lengthCounts, other.lengthCounts.length);
+        }
+        for (int i = 0; i < other.lengthCounts.length; i++) {
+            lengthCounts[i] += other.lengthCounts[i];
+        }
+        if (other.totalWords > 0) {
+            updateLongest(other.longestWord);
+        }
+        if (liveTopWords != null) {
+            liveTopWords.rebuild(wordTable);
+        }
+        if (nGramCounter != null && other.nGramCounter != null && other.nGramCounter.size() == nGramCounter.size()) {
+            nGramCounter.addAll(other.nGramCounter, other.wordTable, wordTable);
+        }
+    }
+
+    /**
+     * Removes all counted words.
+     */
+    void clear() {
+        wordTable.clear();
+        prefixIndex = null;
+        mostFrequentWord = "";
+        mostFrequentCount = 0;
+        mostFrequentValid = true;
+        totalWords = 0;
+        totalCharacters = 0;
+        Arrays.fill(lengthCounts, 0);
+        longestWord = "";
+        if (liveTopWords != null) {
+            liveTopWords.clear();
+        }
+        if (nGramCounter != null) {
+            nGramCounter.clear();
+        }
+    }
+
+    /**
+     * Gets the total count of words (after filtering), or Integer.MAX_VALUE if
+     * there are more.
      */
     public int getTotalWordCount() {
-        return allWords.size();
+        return (int) Math.min(totalWords, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the total count of words (after filtering) as a long.
+     */
+    public long getTotalWords() {
+        return totalWords;
+    }
+
+    /**
+     * Gets the total number of characters in all counted words.
+     */
+    long getTotalCharacters() {
+        return totalCharacters;
+    }
+
+    /**
+     * Gets the underlying word table. Callers must not modify it.
+     */
+    WordTable getWordTable() {
+        return wordTable;
     }
 
     /**
      * Gets the count of unique words.
      */
     public int getUniqueWordCount() {
-        return wordFrequency.size();
+        return wordTable.size();
     }
 
     /**
      * Calculates the average word length.
      */
     public double getAverageWordLength() {
-        if (allWords.isEmpty()) {
+        if (totalWords == 0) {
             return 0.0;
         }
-        int totalLength = 0;
-        for (int i = 0; i < allWords.size(); i++) {
-            totalLength = totalLength + allWords.get(i).length();
-        }
-        return (double) totalLength / allWords.size();
+        return (double) totalCharacters / totalWords;
     }
 
     /**
      * Finds the longest word in the text.
+     * If several words share the longest length, the alphabetically first is returned.
      */
     public String getLongestWord() {
-        String longest = "";
-        for (String word : wordFrequency.keySet()) {
-            if (word.length() > longest.length()) {
-                longest = word;
-            }
-        }
-        return longest;
+        return longestWord;
+    }
+
+    /**
+     * Gets the number of counted words of each length; index i holds the
+     * number of words that are i characters long.
+     */
+    public long[] getWordLengthCounts() {
+        int maxLength = longestWord.length();
+        return Arrays.copyOf(lengthCounts, maxLength + 1);
     }
 
     /**
      * Finds the most frequent word.
+     * Ties are broken alphabetically, matching the first entry of getTopNWords.
      */
     public String getMostFrequentWord() {
-        String mostFrequent = "";
-        int maxCount = 0;
-
-        for (String word : wordFrequency.keySet()) {
-            int count = wordFrequency.get(word);
-            if (count > maxCount) {
-                maxCount = count;
-                mostFrequent = word;
-            }
-        }
-        return mostFrequent;
+        ensureMostFrequent();
+        return mostFrequentWord;
     }
 
     /**
      * Gets the frequency of the most frequent word.
      */
     public int getMostFrequentWordCount() {
-        int maxCount = 0;
-        for (String word : wordFrequency.keySet()) {
-            int count = wordFrequency.get(word);
-            if (count > maxCount) {
-                maxCount = count;
-            }
+        ensureMostFrequent();
+        return mostFrequentCount;
+    }
+
+    /**
+     * Takes a counted word as the most frequent one if it now ranks first.
+     */
+    private void updateMostFrequent(int id) {
+        int count = wordTable.count(id);
+        if (count > mostFrequentCount
+                || (count == mostFrequentCount && wordTable.word(id).compareTo(mostFrequentWord) < 0)) {
+            mostFrequentCount = count;
+            mostFrequentWord = wordTable.word(id);
         }
-        return maxCount;
     }
 
     /**
-     * Returns the n most frequent words sorted by count descending.
-     * Uses simple sorting with Comparator.
+     * Recomputes the most frequent word after a merge, in one pass over the vocabulary.
      */
-    public List<Map.Entry<String, Integer>> getTopNWords(int n) {
-        // Convert map entries to a list
-        List<Map.Entry<String, Integer>> entryList = new ArrayList<Map.Entry<String, Integer>>();
-        for (Map.Entry<String, Integer> entry : wordFrequency.entrySet()) {
-            entryList.add(entry);
-        }
-
-        // Sort by count (descending), then alphabetically if counts are equal
-        Collections.sort(entryList, new Comparator<Map.Entry<String, Integer>>() {
-            public int compare(Map.Entry<String, Integer> e1, Map.Entry<String, Integer> e2) {
-                // Compare counts in descending order
-                int countCompare = e2.getValue().compareTo(e1.getValue());
-                if (countCompare != 0) {
-                    return countCompare;
-                }
-                // If counts are equal, sort alphabetically
-                return e1.getKey().compareTo(e2.getKey());
+    private void ensureMostFrequent() {
+        if (mostFrequentValid) {
+            return;
+        }
+        mostFrequentWord = "";
+        mostFrequentCount = 0;
+        if (liveTopWords != null && liveTopWords.size() > 0) {
+            updateMostFrequent(liveTopWords.id(0));
+        } else {
+            for (int id = 0; id < wordTable.size(); id++) {
+                updateMostFrequent(id);
             }
-        });
+        }
+        mostFrequentValid = true;
+    }
 
-        // Get top N entries
+    /**
+     * Returns the n most frequent words sorted by count descending, then
+     * alphabetically. Uses a bounded heap over the vocabulary (O(V log n)), or
+     * the live top words when they are being tracked and cover n.
+     */
+    public List<Map.Entry<String, Integer>> getTopNWords(int n) {
         List<Map.Entry<String, Integer>> topN = new ArrayList<Map.Entry<String, Integer>>();
-        for (int i = 0; i < n && i < entryList.size(); i++) {
-            topN.add(entryList.get(i));
+
+        if (liveTopWords != null && n <= liveTopWords.capacity()) {
+            for (int rank = 0; rank < n && rank < liveTopWords.size(); rank++) {
+                topN.add(entry(liveTopWords.id(rank)));
+            }
+            return topN;
         }
 
+        int[] ids = TopWords.select(wordTable, n);
+        for (int i = 0; i < ids.length; i++) {
+            topN.add(entry(ids[i]));
+        }
         return topN;
     }
 
     /**
-     * Returns words starting with the given prefix, sorted alphabetically.
+     * Keeps the k most frequent words up to date while counting, so that
+     * getTopNWords(n) for any n up to k is answered without scanning the
+     * vocabulary. Pass 0 to stop tracking.
      */
-    public List<String> getWordsStartingWith(String prefix) {
-        String lowerPrefix = prefix.toLowerCase();
-        List<String> matchingWords = new ArrayList<String>();
+    public void setLiveTopWords(int k) {
+        if (k <= 0) {
+            liveTopWords = null;
+            return;
+        }
+        liveTopWords = new TopWords(wordTable, k);
+        liveTopWords.rebuild(wordTable);
+    }
+
+    /**
+     * Also counts sequences of n consecutive counted words (2 to 4), or stops
+     * counting them when n is 0. N-grams are formed after stop words and short
+     * words are removed. Counting starts from the next word; parallel
+     * processing falls back to one pass while n-grams are counted.
+     */
+    public void setNGramSize(int n) {
+        nGramCounter = n == 0 ? null : new NGramCounter(n);
+    }
+
+    /**
+     * Gets the n-gram size being counted, or 0 if n-grams are not counted.
+     */
+    public int getNGramSize() {
+        return nGramCounter == null ? 0 : nGramCounter.size();
+    }
+
+    /**
+     * Returns the n most frequent n-grams, their words joined by single spaces,
+     * sorted by count descending, then alphabetically.
+     */
+    public List<Map.Entry<String, Integer>> getTopNGrams(int n) {
+        List<Map.Entry<String, Integer>> topN = new ArrayList<Map.Entry<String, Integer>>();
+        if (nGramCounter == null) {
+            return topN;
+        }
+        long[] keys = nGramCounter.top(n, wordTable);
+        for (int i = 0; i < keys.length; i++) {
+            topN.add(new AbstractMap.SimpleImmutableEntry<String, Integer>(nGramCounter.text(keys[i], wordTable),
+                    nGramCounter.count(keys[i])));
+        }
+        return topN;
+    }
 
-        // Find all words that start with the prefix
-        for (String word : wordFrequency.keySet()) {
-            if (word.startsWith(lowerPrefix)) {
-                matchingWords.add(word);
+    /**
+     * Gets the frequency of an n-gram given as words separated by whitespace.
+     */
+    public int getNGramCount(String nGram) {
+        String[] words = nGram.trim().toLowerCase().split("\\s+");
+        if (nGramCounter == null || words.length != nGramCounter.size()) {
+            return 0;
+        }
+        int[] ids = new int[words.length];
+        for (int i = 0; i < words.length; i++) {
+            ids[i] = wordTable.find(words[i]);
+            if (ids[i] < 0) {
+                return 0;
             }
         }
+        return nGramCounter.count(ids);
+    }
+
+    /**
+     * Gets the number of distinct n-grams counted.
+     */
+    public int getUniqueNGramCount() {
+        return nGramCounter == null ? 0 : nGramCounter.distinctCount();
+    }
+
+    /**
+     * Ends the current word sequence, so that no n-gram spans the break.
+     */
+    void breakNGrams() {
+        if (nGramCounter != null) {
+            nGramCounter.breakSequence();
+        }
+    }
+
+    private Map.Entry<String, Integer> entry(int id) {
+        return new AbstractMap.SimpleImmutableEntry<String, Integer>(wordTable.word(id), wordTable.count(id));
+    }
+
+    /**
+     * Returns words starting with the given prefix, sorted alphabetically.
+     */
+    public List<String> getWordsStartingWith(String prefix) {
+        return getPrefixIndex().wordsStartingWith(prefix.toLowerCase());
+    }
 
-        // Sort alphabetically
-        Collections.sort(matchingWords);
+    /**
+     * Returns the words starting with the given prefix together with their
+     * counts, sorted alphabetically.
+     */
+    public List<Map.Entry<String, Integer>> getWordCountsStartingWith(String prefix) {
+        return getPrefixIndex().countsStartingWith(prefix.toLowerCase());
+    }
 
-        return matchingWords;
+    /**
+     * Gets the sorted prefix index, building it on the first query after the
+     * counts last changed.
+     */
+    private PrefixIndex getPrefixIndex() {
+        if (prefixIndex == null) {
+            prefixIndex = new PrefixIndex(wordTable);
+        }
+        return prefixIndex;
     }
 
     /**
-     * Gets the word frequency map.
+     * Gets a copy of the word frequency map.
+     * Prefer getWordFrequencyView or forEachWord, which do not copy the vocabulary.
      */
     public Map<String, Integer> getWordFrequency() {
-        return new HashMap<String, Integer>(wordFrequency);
+        Map<String, Integer> frequencies = new HashMap<String, Integer>();
+        for (int id = 0; id < wordTable.size(); id++) {
+            frequencies.put(wordTable.word(id), wordTable.count(id));
+        }
+        return frequencies;
     }
 
     /**
@@ -240,16 +660,104 @@ public class WordCounter {
      */
     public int getWordCount(String word) {
         String lowerWord = word.toLowerCase();
-        if (wordFrequency.containsKey(lowerWord)) {
-            return wordFrequency.get(lowerWord);
+        int id = wordTable.find(lowerWord);
+        if (id >= 0) {
+            return wordTable.count(id);
         }
         return 0;
     }
 
     /**
-     * Gets the set of stop words.
+     * Gets a read-only view of the word frequencies. The view is backed by this
+     * counter, so it reflects later counting; lookups go straight to the word table.
+     */
+    public Map<String, Integer> getWordFrequencyView() {
+        return new FrequencyView();
+    }
+
+    /**
+     * Calls the visitor once for every distinct word and its count, in the
+     * order the words were first counted, without copying the vocabulary.
+     */
+    public void forEachWord(WordVisitor visitor) {
+        WordTable table = wordTable;
+        for (int id = 0; id < table.size(); id++) {
+            visitor.visit(table.word(id), table.count(id));
+        }
+    }
+
+    /**
+     * Gets a copy of the set of stop words.
      */
     public Set<String> getStopWords() {
-        return new HashSet<String>(stopWords);
+        return new HashSet<String>(stopWordFilter.getStopWords());
+    }
+
+    /**
+     * Gets a read-only view of the stop words, without copying them.
+     */
+    public Set<String> getStopWordsView() {
+        return stopWordFilter.getStopWords();
+    }
+
+    /**
+     * Gets the filter deciding which words are counted.
+     */
+    public StopWordFilter getStopWordFilter() {
+        return stopWordFilter;
+    }
+
+    /**
+     * Read-only Map over the word table. Iteration creates one entry per word
+     * visited; size, get and containsKey never copy anything.
+     */
+    private class FrequencyView extends AbstractMap<String, Integer> {
+        public int size() {
+            return wordTable.size();
+        }
+
+        public Integer get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            int id = wordTable.find((String) key);
+            return id >= 0 ? Integer.valueOf(wordTable.count(id)) : null;
+        }
+
+        public boolean containsKey(Object key) {
+            return key instanceof String && wordTable.find((String) key) >= 0;
+        }
+
+        public Set<Map.Entry<String, Integer>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Integer>>() {
+                public int size() {
+                    return wordTable.size();
+                }
+
+                public Iterator<Map.Entry<String, Integer>> iterator() {
+                    final WordTable table = wordTable;
+                    return new Iterator<Map.Entry<String, Integer>>() {
+                        private int next = 0;
+
+                        public boolean hasNext() {
+                            return next < table.size();
+                        }
+
+                        public Map.Entry<String, Integer> next() {
+                            if (next >= table.size()) {
+                                throw new NoSuchElementException();
+                            }
+                            int id = next;
+                            next++;
+                            return new AbstractMap.SimpleImmutableEntry<String, Integer>(table.word(id), table.count(id));
+                        }
+
+                        public void remove() {
+                            throw new UnsupportedOperationException("Word frequency view is read-only");
+                        }
+                    };
+                }
+            };
+        }
     }
 }
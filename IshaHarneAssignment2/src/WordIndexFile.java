@@ -0,0 +1,466 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary index file holding a WordCounter's vocabulary, counts and running
+ * statistics, queried through a memory mapping instead of being loaded back
+ * into a hash table.
+ *
+ * Words are stored as a sorted string table: each entry keeps only the UTF-8
+ * bytes that differ from the previous word, followed by its count as a varint.
+ * Every 16th entry is a restart point stored in full, so a lookup binary
+ * searches the restart points and then decodes at most one block. A rank table
+ * lists the entries by count, so top N queries read the first N ranks.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   header    magic, version, restart interval, word count, total words,
+ *             total characters, then the offsets of the sections below
+ *   stats     longest word, word length histogram
+ *   entries   per word: shared prefix length, suffix length, suffix bytes, count
+ *   restarts  int offset of every restart entry
+ *   ranks     int entry index of every word, most frequent first
+ * </pre>
+ * The whole file is mapped at once, so it is limited to 2 GB.
+ */
+public class WordIndexFile {
+    private static final int MAGIC = 0x57494458; // "WIDX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 52;
+    private static final int RESTART_INTERVAL = 16;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private String filePath;
+    private ByteBuffer buffer;
+    private int wordCount;
+    private long totalWords;
+    private long totalCharacters;
+    private int restartCount;
+    private int restartsOffset;
+    private int ranksOffset;
+    private String longestWord;
+    private long[] lengthCounts;
+
+    private WordIndexFile(String filePath, ByteBuffer buffer) throws IOException {
+        this.filePath = filePath;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a word index file: " + filePath);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported word index version " + buffer.getInt(4) + " in " + filePath);
+        }
+        if (buffer.getInt(8) != RESTART_INTERVAL) {
+            throw new IOException("Unsupported restart interval in " + filePath);
+        }
+        this.wordCount = buffer.getInt(12);
+        this.totalWords = buffer.getLong(16);
+        this.totalCharacters = buffer.getLong(24);
+        int statsOffset = buffer.getInt(32);
+        int dataOffset = buffer.getInt(36);
+        this.restartsOffset = buffer.getInt(40);
+        this.restartCount = buffer.getInt(44);
+        this.ranksOffset = buffer.getInt(48);
+        checkLayout(statsOffset, dataOffset);
+
+        Cursor stats = new Cursor(statsOffset);
+        byte[] longest = new byte[stats.readVarInt()];
+        for (int i = 0; i < longest.length; i++) {
+            longest[i] = buffer.get(stats.position++);
+        }
+        this.longestWord = new String(longest, UTF_8);
+        this.lengthCounts = new long[stats.readVarInt()];
+        for (int i = 0; i < lengthCounts.length; i++) {
+            lengthCounts[i] = stats.readVarLong();
+        }
+    }
+
+    /**
+     * Checks that the sections follow each other as write() lays them out and
+     * that the restart table points into the entries, so a truncated or
+     * corrupt file fails here rather than on a later query.
+     */
+    private void checkLayout(int statsOffset, int dataOffset) throws IOException {
+        boolean valid = wordCount >= 0
+                && statsOffset >= HEADER_SIZE && dataOffset >= statsOffset && restartsOffset >= dataOffset
+                && restartCount == (wordCount + RESTART_INTERVAL - 1) / RESTART_INTERVAL
+                && ranksOffset == restartsOffset + 4L * restartCount
+                && buffer.capacity() == ranksOffset + 4L * wordCount;
+        if (valid && restartCount > 0) {
+            // Restart entries are ascending, the first at the start of the entries
+            valid = buffer.getInt(restartsOffset) == dataOffset
+                    && buffer.getInt(restartsOffset + 4 * (restartCount - 1)) < restartsOffset;
+        }
+        if (!valid) {
+            throw new IOException("Corrupt word index file: " + filePath);
+        }
+    }
+
+    /**
+     * Writes the words, counts and statistics of a WordCounter to an index file.
+     */
+    public static void write(WordCounter wordCounter, String filePath) throws IOException {
+        WordTable table = wordCounter.getWordTable();
+        int size = table.size();
+
+        String[] sorted = new String[size];
+        for (int id = 0; id < size; id++) {
+            sorted[id] = table.word(id);
+        }
+        Arrays.sort(sorted);
+        // Entry index of each word id, for the rank table
+        int[] positions = new int[size];
+        int[] sortedCounts = new int[size];
+        for (int i = 0; i < size; i++) {
+            int id = table.find(sorted[i]);
+            positions[id] = i;
+            sortedCounts[i] = table.count(id);
+        }
+
+        int statsOffset;
+        int dataOffset;
+        int restartsOffset;
+        int ranksOffset;
+        int restartCount = (size + RESTART_INTERVAL - 1) / RESTART_INTERVAL;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)));
+        try {
+            // Placeholder header, filled in once the section offsets are known
+            out.write(new byte[HEADER_SIZE]);
+
+            statsOffset = out.size();
+            byte[] longest = wordCounter.getLongestWord().getBytes(UTF_8);
+            writeVarLong(out, longest.length);
+            out.write(longest);
+            long[] lengths = wordCounter.getWordLengthCounts();
+            writeVarLong(out, lengths.length);
+            for (int i = 0; i < lengths.length; i++) {
+                writeVarLong(out, lengths[i]);
+            }
+
+            dataOffset = out.size();
+            int[] restarts = new int[restartCount];
+            byte[] previous = new byte[0];
+            for (int i = 0; i < size; i++) {
+                byte[] key = sorted[i].getBytes(UTF_8);
+                int shared = 0;
+                if (i % RESTART_INTERVAL == 0) {
+                    restarts[i / RESTART_INTERVAL] = out.size();
+                } else {
+                    int limit = Math.min(previous.length, key.length);
+                    while (shared < limit && previous[shared] == key[shared]) {
+                        shared++;
+                    }
+                }
+                writeVarLong(out, shared);
+                writeVarLong(out, key.length - shared);
+                out.write(key, shared, key.length - shared);
+                writeVarLong(out, sortedCounts[i]);
+                previous = key;
+            }
+
+            restartsOffset = out.size();
+            for (int i = 0; i < restartCount; i++) {
+                out.writeInt(restarts[i]);
+            }
+
+            ranksOffset = out.size();
+            int[] ranked = TopWords.select(table, size);
+            for (int i = 0; i < ranked.length; i++) {
+                out.writeInt(positions[ranked[i]]);
+            }
+        } finally {
+            out.close();
+        }
+
+        RandomAccessFile file = new RandomAccessFile(filePath, "rw");
+        try {
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            file.writeInt(RESTART_INTERVAL);
+            file.writeInt(size);
+            file.writeLong(wordCounter.getTotalWords());
+            file.writeLong(wordCounter.getTotalCharacters());
+            file.writeInt(statsOffset);
+            file.writeInt(dataOffset);
+            file.writeInt(restartsOffset);
+            file.writeInt(restartCount);
+            file.writeInt(ranksOffset);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Maps an index file written by write() for querying.
+     * The mapping stays valid after this returns; it is released when the
+     * returned object is garbage collected.
+     */
+    public static WordIndexFile open(String filePath) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filePath, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Word index file is larger than 2 GB: " + filePath);
+            }
+            return new WordIndexFile(filePath, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            file.close();
+        }
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Gets the frequency of a specific word.
+     */
+    public int getWordCount(String word) {
+        String lowerWord = word.toLowerCase();
+        Cursor cursor = new Cursor(0);
+        cursor.seekBlock(lastBlockStartingAtOrBefore(lowerWord, false));
+        for (int i = 0; i < RESTART_INTERVAL && cursor.next(); i++) {
+            int comparison = cursor.key().compareTo(lowerWord);
+            if (comparison == 0) {
+                return cursor.count;
+            }
+            if (comparison > 0) {
+                break;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the words starting with the prefix and their counts, in alphabetical order.
+     */
+    public List<Map.Entry<String, Integer>> getWordCountsStartingWith(String prefix) {
+        String lowerPrefix = prefix.toLowerCase();
+        List<Map.Entry<String, Integer>> matches = new ArrayList<Map.Entry<String, Integer>>();
+        Cursor cursor = new Cursor(0);
+        cursor.seekBlock(lastBlockStartingAtOrBefore(lowerPrefix, true));
+        while (cursor.next()) {
+            String key = cursor.key();
+            if (key.startsWith(lowerPrefix)) {
+                matches.add(new AbstractMap.SimpleImmutableEntry<String, Integer>(key, cursor.count));
+            } else if (key.compareTo(lowerPrefix) > 0) {
+                break;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns words starting with the given prefix, sorted alphabetically.
+     */
+    public List<String> getWordsStartingWith(String prefix) {
+        List<Map.Entry<String, Integer>> matches = getWordCountsStartingWith(prefix);
+        List<String> words = new ArrayList<String>(matches.size());
+        for (int i = 0; i < matches.size(); i++) {
+            words.add(matches.get(i).getKey());
+        }
+        return words;
+    }
+
+    /**
+     * Returns the n most frequent words sorted by count descending, then alphabetically.
+     */
+    public List<Map.Entry<String, Integer>> getTopNWords(int n) {
+        int limit = Math.max(0, Math.min(n, wordCount));
+        List<Map.Entry<String, Integer>> topN = new ArrayList<Map.Entry<String, Integer>>(limit);
+        Cursor cursor = new Cursor(0);
+        for (int rank = 0; rank < limit; rank++) {
+            cursor.seekEntry(buffer.getInt(ranksOffset + 4 * rank));
+            topN.add(new AbstractMap.SimpleImmutableEntry<String, Integer>(cursor.key(), cursor.count));
+        }
+        return topN;
+    }
+
+    /**
+     * Index of the last block whose first word is before the key (or equal to
+     * it, unless strict), or 0 if there is none.
+     */
+    private int lastBlockStartingAtOrBefore(String key, boolean strict) {
+        int low = 0;
+        int high = restartCount - 1;
+        int found = 0;
+        Cursor cursor = new Cursor(0);
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            cursor.seekBlock(middle);
+            cursor.next();
+            int comparison = cursor.key().compareTo(key);
+            if (comparison < 0 || (comparison == 0 && !strict)) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Gets the total count of words (after filtering), or Integer.MAX_VALUE if
+     * there are more.
+     */
+    public int getTotalWordCount() {
+        return (int) Math.min(totalWords, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the total count of words (after filtering) as a long.
+     */
+    public long getTotalWords() {
+        return totalWords;
+    }
+
+    /**
+     * Gets the count of unique words.
+     */
+    public int getUniqueWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * Gets the average word length.
+     */
+    public double getAverageWordLength() {
+        if (totalWords == 0) {
+            return 0.0;
+        }
+        return (double) totalCharacters / totalWords;
+    }
+
+    /**
+     * Gets the longest word (alphabetically first on ties).
+     */
+    public String getLongestWord() {
+        return longestWord;
+    }
+
+    /**
+     * Gets the number of counted words of each length (index = length).
+     */
+    public long[] getWordLengthCounts() {
+        return lengthCounts.clone();
+    }
+
+    /**
+     * Gets the most frequent word (alphabetically first on ties), read from the rank table.
+     */
+    public String getMostFrequentWord() {
+        List<Map.Entry<String, Integer>> top = getTopNWords(1);
+        return top.isEmpty() ? "" : top.get(0).getKey();
+    }
+
+    /**
+     * Gets the frequency of the most frequent word.
+     */
+    public int getMostFrequentWordCount() {
+        List<Map.Entry<String, Integer>> top = getTopNWords(1);
+        return top.isEmpty() ? 0 : top.get(0).getValue();
+    }
+
+    /**
+     * Gets the file path.
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Reads entries sequentially from the mapping with absolute gets, so several
+     * cursors can be used on the shared buffer at once.
+     */
+    private class Cursor {
+        private int position;
+        private int index;
+        private byte[] key;
+        private int keyLength;
+        private int count;
+
+        Cursor(int position) {
+            this.position = position;
+            this.key = new byte[64];
+        }
+
+        void seekBlock(int block) {
+            if (block >= restartCount) {
+                // Only happens for an empty index
+                index = wordCount;
+                return;
+            }
+            position = buffer.getInt(restartsOffset + 4 * block);
+            index = block * RESTART_INTERVAL;
+            keyLength = 0;
+        }
+
+        /**
+         * Positions the cursor on the given entry, decoding from its restart point.
+         */
+        void seekEntry(int entry) {
+            seekBlock(entry / RESTART_INTERVAL);
+            for (int i = entry % RESTART_INTERVAL; i >= 0; i--) {
+                next();
+            }
+        }
+
+        /**
+         * Decodes the next entry, returning false past the last one.
+         */
+        boolean next() {
+            if (index >= wordCount) {
+                return false;
+            }
+            int shared = readVarInt();
+            int unshared = readVarInt();
+            if (shared + unshared > key.length) {
+                key = Arrays.copyOf(key, Math.max(key.length * 2, shared + unshared));
+            }
+            for (int i = 0; i < unshared; i++) {
+                key[shared + i] = buffer.get(position++);
+            }
+            keyLength = shared + unshared;
+            count = readVarInt();
+            index++;
+            return true;
+        }
+
+        String key() {
+            return new String(key, 0, keyLength, UTF_8);
+        }
+
+        int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                byte b = buffer.get(position++);
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Word statistics that StatisticsReport can format. Implemented exactly by
+ * WordCounter and approximately, in fixed memory, by ApproximateWordCounter.
+ */
+public interface WordStatistics {
+
+    /**
+     * Gets the total count of words (after filtering), or Integer.MAX_VALUE if
+     * there are more.
+     */
+    int getTotalWordCount();
+
+    /**
+     * Gets the total count of words (after filtering) as a long.
+     */
+    long getTotalWords();
+
+    /**
+     * Gets the count of unique words.
+     */
+    int getUniqueWordCount();
+
+    /**
+     * Gets the average word length.
+     */
+    double getAverageWordLength();
+
+    /**
+     * Gets the longest word (alphabetically first on ties).
+     */
+    String getLongestWord();
+
+    /**
+     * Gets the number of counted words of each length (index = length).
+     */
+    long[] getWordLengthCounts();
+
+    /**
+     * Gets the most frequent word (alphabetically first on ties).
+     */
+    String getMostFrequentWord();
+
+    /**
+     * Gets the frequency of the most frequent word.
+     */
+    int getMostFrequentWordCount();
+
+    /**
+     * Returns the n most frequent words sorted by count descending, then alphabetically.
+     */
+    List<Map.Entry<String, Integer>> getTopNWords(int n);
+
+    /**
+     * Gets the n-gram size being counted, or 0 if n-grams are not counted.
+     */
+    int getNGramSize();
+
+    /**
+     * Returns the n most frequent n-grams (words joined by single spaces),
+     * sorted by count descending, then alphabetically. Empty if not counted.
+     */
+    List<Map.Entry<String, Integer>> getTopNGrams(int n);
+
+    /**
+     * Returns words starting with the given prefix, sorted alphabetically.
+     */
+    List<String> getWordsStartingWith(String prefix);
+
+    /**
+     * Returns the words starting with the given prefix with their counts, sorted alphabetically.
+     */
+    List<Map.Entry<String, Integer>> getWordCountsStartingWith(String prefix);
+
+    /**
+     * Gets the frequency of a specific word.
+     */
+    int getWordCount(String word);
+
+    /**
+     * Gets a read-only view of the stop words excluded from counting.
+     */
+    Set<String> getStopWordsView();
+}
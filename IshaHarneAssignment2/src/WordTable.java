@@ -0,0 +1,232 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table from words to int counts, built for counting.
+ * Each distinct word gets a dense id in first-seen order. Words are stored once,
+ * as Strings indexed by id, and counts live in an int[]. A word straight from a
+ * tokenizer buffer slice is compared against the stored String character by
+ * character, so looking it up allocates nothing; a String is created only when
+ * a new word is inserted.
+ */
+class WordTable {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Hash slot -> word id + 1 (0 marks an empty slot); length is a power of two
+    private int[] slots;
+    private int mask;
+
+    // Per word id
+    private int[] hashes;
+    private int[] counts;
+    private String[] words;
+    private int size;
+
+    WordTable() {
+        this(INITIAL_CAPACITY);
+    }
+
+    WordTable(int expectedWords) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < expectedWords * 2) {
+            capacity = capacity * 2;
+        }
+        slots = new int[capacity];
+        mask = capacity - 1;
+        int perWord = Math.max(16, expectedWords);
+        hashes = new int[perWord];
+        counts = new int[perWord];
+        words = new String[perWord];
+    }
+
+    /**
+     * Adds delta to the count of the word in buffer[offset, offset + length),
+     * inserting it if it is new. Returns the word's id.
+     */
+    int add(char[] buffer, int offset, int length, int delta) {
+        int hash = hash(buffer, offset, length);
+        int slot = hash & mask;
+        while (true) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                int id = insert(new String(buffer, offset, length), hash, slot);
+                counts[id] = delta;
+                return id;
+            }
+            int id = entry - 1;
+            if (hashes[id] == hash && equalsAt(id, buffer, offset, length)) {
+                counts[id] += delta;
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Adds delta to the count of the word, inserting it if it is new.
+     * Returns the word's id.
+     */
+    int add(String word, int delta) {
+        int hash = hash(word);
+        int slot = hash & mask;
+        while (true) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                int id = insert(word, hash, slot);
+                counts[id] = delta;
+                return id;
+            }
+            int id = entry - 1;
+            if (hashes[id] == hash && words[id].equals(word)) {
+                counts[id] += delta;
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Adds delta, which may be negative, to the count of the word with the given id.
+     */
+    void addCount(int id, int delta) {
+        counts[id] += delta;
+    }
+
+    /**
+     * Adds every word and count of another table to this one.
+     */
+    void addAll(WordTable other) {
+        for (int id = 0; id < other.size; id++) {
+            add(other.words[id], other.counts[id]);
+        }
+    }
+
+    /**
+     * Returns the id of the word in buffer[offset, offset + length), or -1 if absent.
+     */
+    int find(char[] buffer, int offset, int length) {
+        int hash = hash(buffer, offset, length);
+        int slot = hash & mask;
+        while (true) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            int id = entry - 1;
+            if (hashes[id] == hash && equalsAt(id, buffer, offset, length)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Returns the id of the word, or -1 if absent.
+     */
+    int find(String word) {
+        int hash = hash(word);
+        int slot = hash & mask;
+        while (true) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            int id = entry - 1;
+            if (hashes[id] == hash && words[id].equals(word)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    String word(int id) {
+        return words[id];
+    }
+
+    int count(int id) {
+        return counts[id];
+    }
+
+    int length(int id) {
+        return words[id].length();
+    }
+
+    void clear() {
+        Arrays.fill(slots, 0);
+        Arrays.fill(words, 0, size, null);
+        size = 0;
+    }
+
+    private int insert(String word, int hash, int slot) {
+        if (size == counts.length) {
+            growEntries();
+        }
+        int id = size;
+        hashes[id] = hash;
+        words[id] = word;
+        size++;
+
+        slots[slot] = id + 1;
+        // Keep the load factor at or below one half
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void growEntries() {
+        int capacity = counts.length * 2;
+        hashes = Arrays.copyOf(hashes, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        words = Arrays.copyOf(words, capacity);
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    private boolean equalsAt(int id, char[] buffer, int offset, int length) {
+        String word = words[id];
+        if (word.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (word.charAt(i) != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * String.hashCode of the slice, scrambled so that masking to a table slot
+     * spreads similar words apart.
+     */
+    static int hash(char[] buffer, int offset, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + buffer[offset + i];
+        }
+        return spread(h);
+    }
+
+    static int hash(String word) {
+        return spread(word.hashCode());
+    }
+
+    private static int spread(int h) {
+        h = h * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * Receives each word and its count from WordCounter.forEachWord.
+ */
+public interface WordVisitor {
+
+    /**
+     * Visits one distinct word and the number of times it was counted.
+     */
+    void visit(String word, int count);
+}
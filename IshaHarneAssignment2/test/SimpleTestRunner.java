@@ -0,0 +1,1338 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Simple test runner that doesn't require JUnit.
+ * Each section checks one part of the analyzer, mostly against a simpler
+ * reference such as the original readAndNormalize + processText pipeline.
+ */
+public class SimpleTestRunner {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String LINE = "============================================================";
+
+    // Words with context-sensitive lowercasing, multi-byte UTF-8, punctuation and stop words
+    private static final String[] PIECES = {
+        "Hello", "WORLD", "data", "Processing", "straße", "ΣΟΦΟΣ", "naïve", "日本語",
+        "😀emoji", "Ünïcödé", "a-b", "--", "Façade", "İstanbul", "the", "and", "of", "it's",
+        "x", "software", "DEVELOPMENT", "machine", "learning", "42", "v2.0"
+    };
+    private static final String[] SEPARATORS = {" ", "\n", "\r\n", "\t", "  ", ", ", ". "};
+
+    private static int passed = 0;
+    private static int failed = 0;
+    private static File tempDirectory;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println(LINE);
+        System.out.println("         TEXT ANALYZER TEST SUITE");
+        System.out.println(LINE);
+        System.out.println();
+
+        tempDirectory = Files.createTempDirectory("text-analyzer-test").toFile();
+        try {
+            // Fused Tokenizer Tests
+            runFusedTokenizerTests();
+
+            // Parallel Counting Tests
+            runParallelCountingTests();
+
+            // Memory-Mapped Reader Tests
+            runMappedReaderTests();
+
+            // Word Total Tests
+            runWordTotalTests();
+
+            // Live Top Words Tests
+            runLiveTopWordsTests();
+
+            // Corpus Analyzer Tests
+            runCorpusAnalyzerTests();
+
+            // Word Index File Tests
+            runWordIndexFileTests();
+
+            // UTF-8 Byte Tokenizer Tests
+            runUtf8TokenizerTests();
+
+            // HyperLogLog Tests
+            runHyperLogLogTests();
+
+            // Frequency Sketch Tests
+            runFrequencySketchTests();
+
+            // Custom Stop Word Filter Tests
+            runCustomFilterTests();
+
+            // N-gram Tests
+            runNGramTests();
+
+            // Query Server Tests
+            runQueryServerTests();
+
+            // Windowed Counter Tests
+            runWindowedCounterTests();
+
+            // Inverted Index Tests
+            runInvertedIndexTests();
+
+            // Streaming Decoding Tests
+            runStreamingDecodingTests();
+        } finally {
+            deleteRecursively(tempDirectory);
+        }
+
+        // Print summary
+        System.out.println();
+        System.out.println(LINE);
+        System.out.printf("TEST RESULTS: %d passed, %d failed%n", passed, failed);
+        System.out.println(LINE);
+
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void runFusedTokenizerTests() throws IOException {
+        System.out.println("--- Fused Tokenizer Tests ---");
+
+        // Short random texts: the fused tokenizer gives exactly the normalized words
+        Random random = new Random(0);
+        boolean sameWords = true;
+        for (int trial = 0; trial < 300 && sameWords; trial++) {
+            String text = randomText(random, random.nextInt(40), PIECES);
+            sameWords = normalizedWords(text).equals(fusedWords(text));
+        }
+        assertTrue("Same words as normalizeText + split, 300 random texts", sameWords);
+        String[] edgeCases = {"", " ", "ΟΔΟΣ.", "ΟΔΟΣ\tΣ", "İI", "--a--", "x\r\ny", "Ω😀Ω", "ΣΑΣ ΣΑΣ", "ǅemal"};
+        for (int i = 0; i < edgeCases.length; i++) {
+            assertEqual("Same words for \"" + edgeCases[i].replace("\t", "\\t").replace("\r\n", "\\r\\n") + "\"",
+                    normalizedWords(edgeCases[i]).toString(), fusedWords(edgeCases[i]).toString());
+        }
+
+        // A whole file: counts, totals and derived statistics match the old pipeline
+        String text = randomText(new Random(1), 120000, PIECES);
+        File file = writeFile("counting.txt", text.getBytes(UTF_8));
+        TextReader reader = new TextReader(file.getPath(), UTF_8);
+        WordCounter expected = new WordCounter();
+        expected.processText(reader.readAndNormalize());
+        assertTrue("Reference pipeline counts words", expected.getTotalWordCount() > 50000);
+
+        WordCounter raw = new WordCounter();
+        raw.processRawText(reader.readFile());
+        assertSameCounts("processRawText", expected, raw);
+
+        TextAnalyzer analyzer = new TextAnalyzer(file.getPath(), UTF_8);
+        analyzer.analyze();
+        assertSameCounts("TextAnalyzer.analyze", expected, analyzer.getWordCounter());
+
+        System.out.println();
+    }
+
+    private static void runParallelCountingTests() throws IOException {
+        System.out.println("--- Parallel Counting Tests ---");
+
+        File file = writeFile("parallel.txt", randomText(new Random(1), 120000, PIECES).getBytes(UTF_8));
+        TextReader reader = new TextReader(file.getPath(), UTF_8);
+        WordCounter expected = new WordCounter();
+        expected.processText(reader.readAndNormalize());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            WordCounter parallel = new WordCounter();
+            parallel.processTextParallel(reader.readAndNormalize(), pool);
+            assertSameCounts("processTextParallel", expected, parallel);
+
+            WordCounter rawParallel = new WordCounter();
+            rawParallel.processRawTextParallel(reader.readFile(), pool);
+            assertSameCounts("processRawTextParallel", expected, rawParallel);
+
+            // Too short to split: counted on the calling thread
+            WordCounter small = new WordCounter();
+            small.processRawTextParallel("Hello, hello WORLD", pool);
+            assertEqual("processRawTextParallel, short text", 2, small.getWordCount("hello"));
+        } finally {
+            pool.shutdown();
+        }
+
+        System.out.println();
+    }
+
+    private static void runMappedReaderTests() throws IOException {
+        System.out.println("--- Memory-Mapped Reader Tests ---");
+
+        File file = writeFile("mapped.txt", randomText(new Random(1), 120000, PIECES).getBytes(UTF_8));
+        WordCounter expected = new WordCounter();
+        expected.processText(new TextReader(file.getPath(), UTF_8).readAndNormalize());
+
+        WordCounter mapped = new WordCounter();
+        new MappedTextReader(file.getPath(), 4096, 4).countWords(mapped);
+        assertSameCounts("MappedTextReader, multiple chunks", expected, mapped);
+
+        WordCounter singleChunk = new WordCounter();
+        new MappedTextReader(file.getPath(), Integer.MAX_VALUE, 1).countWords(singleChunk);
+        assertSameCounts("MappedTextReader, one chunk", expected, singleChunk);
+
+        // Chunks never grow past the largest mapping; they end after the last whitespace instead
+        MappedTextReader capped = new MappedTextReader(file.getPath(), 4096, 4);
+        capped.setMaxMappedSize(64);
+        WordCounter cappedCounts = new WordCounter();
+        capped.countWords(cappedCounts);
+        assertSameCounts("MappedTextReader, chunks capped at 64 bytes", expected, cappedCounts);
+        assertTrue("Every capped chunk fits a mapping", largestChunk(capped, file) <= 64);
+
+        // A run longer than a mapping is split there, not past it
+        StringBuilder longRun = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longRun.append('a');
+        }
+        File runFile = writeFile("long-run.txt", (longRun + " bbb").getBytes(UTF_8));
+        MappedTextReader runReader = new MappedTextReader(runFile.getPath(), 16, 2);
+        runReader.setMaxMappedSize(64);
+        WordCounter runCounts = new WordCounter();
+        runReader.countWords(runCounts);
+        assertEqual("Long run split at the mapping limit", 1, runCounts.getWordCount(longRun.substring(0, 64)));
+        assertEqual("Rest of the long run", 1, runCounts.getWordCount(longRun.substring(64)));
+        assertEqual("Word after the long run", 1, runCounts.getWordCount("bbb"));
+
+        // ... and never inside a multi-byte character
+        StringBuilder accents = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            accents.append('\u00e9');
+        }
+        File accentFile = writeFile("long-accents.txt", (accents + " bbb").getBytes(UTF_8));
+        MappedTextReader accentReader = new MappedTextReader(accentFile.getPath(), 16, 2);
+        accentReader.setMaxMappedSize(63);
+        WordCounter accentCounts = new WordCounter();
+        accentReader.countWords(accentCounts);
+        assertEqual("Long run split before a character", 1, accentCounts.getWordCount(accents.substring(0, 31)));
+        assertEqual("Rest of the multi-byte run", 1, accentCounts.getWordCount(accents.substring(31)));
+
+        System.out.println();
+    }
+
+    private static void runWordTotalTests() throws IOException {
+        System.out.println("--- Word Total Tests ---");
+
+        WordCounter counter = new WordCounter();
+        counter.processRawText(randomText(new Random(3), 2000, PIECES));
+        assertEqual("int and long totals agree", counter.getTotalWordCount(), counter.getTotalWords());
+        assertTrue("Report prints the long total", new StatisticsReport(counter, "totals.txt")
+                .getSummary().startsWith("Summary: " + counter.getTotalWords() + " total words"));
+
+        // A saved total past Integer.MAX_VALUE: the int getter saturates instead of wrapping
+        File file = new File(tempDirectory, "totals.idx");
+        WordIndexFile.write(counter, file.getPath());
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        ByteBuffer.wrap(bytes).putLong(16, 3000000000L);
+        File large = writeFile("large-total.idx", bytes);
+        WordIndexFile index = WordIndexFile.open(large.getPath());
+        assertEqual("Saved long total", 3000000000L, index.getTotalWords());
+        assertEqual("Saved int total saturates", Integer.MAX_VALUE, index.getTotalWordCount());
+
+        System.out.println();
+    }
+
+    private static void runLiveTopWordsTests() throws IOException {
+        System.out.println("--- Live Top Words Tests ---");
+
+        // Few distinct words, so counts tie often and ranks change with every batch
+        String[] vocabulary = {"alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel",
+            "india", "juliet", "kilo", "lima", "mike", "november", "oscar", "papa"};
+        Random random = new Random(6);
+        TextTokenizer tokenizer = new TextTokenizer();
+        WordCounter live = new WordCounter();
+        live.setLiveTopWords(8);
+        boolean sameTop = true;
+        for (int batch = 0; batch < 200 && sameTop; batch++) {
+            // Tokenized straight into the counter, which adds to its counts
+            tokenizer.tokenize(randomText(random, 1 + random.nextInt(6), vocabulary), live);
+            sameTop = selectedTopWords(live, 8).equals(live.getTopNWords(8).toString());
+        }
+        assertTrue("Live top 8 matches TopWords.select after each of 200 batches", sameTop);
+        assertTrue("Batches added up", live.getTotalWords() > 200);
+        assertEqual("Live top 3 is a prefix of the live top 8", selectedTopWords(live, 3),
+                live.getTopNWords(3).toString());
+
+        // Equal counts rank alphabetically, whatever order the words arrived in
+        WordCounter ties = new WordCounter();
+        ties.setLiveTopWords(3);
+        ties.processRawText("kilo echo alpha papa echo kilo alpha papa");
+        assertEqual("Ties ranked alphabetically", "[alpha=2, echo=2, kilo=2]", ties.getTopNWords(3).toString());
+        assertEqual("Ties ranked as TopWords.select ranks them", selectedTopWords(ties, 3),
+                ties.getTopNWords(3).toString());
+
+        // Merging rebuilds the live top words from the merged counts
+        WordCounter other = new WordCounter();
+        other.processRawText("papa papa papa oscar oscar oscar");
+        ties.merge(other);
+        assertEqual("Live top words rebuilt after merge", "[papa=5, oscar=3, alpha=2]",
+                ties.getTopNWords(3).toString());
+        tokenizer.tokenize("oscar oscar oscar", ties);
+        assertEqual("Live top words updated after merge", "[oscar=6, papa=5, alpha=2]",
+                ties.getTopNWords(3).toString());
+
+        // A parallel count replaces the table through copyFrom, which rebuilds them too
+        String text = randomText(new Random(7), 20000, vocabulary);
+        WordCounter expected = new WordCounter();
+        expected.processRawText(text);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            WordCounter parallel = new WordCounter();
+            parallel.setLiveTopWords(8);
+            parallel.processRawText("zulu zulu zulu");
+            parallel.processRawTextParallel(text, pool);
+            assertEqual("Live top words rebuilt after a parallel count", expected.getTopNWords(8).toString(),
+                    parallel.getTopNWords(8).toString());
+            tokenizer.tokenize("zulu zulu zulu", parallel);
+            assertEqual("Live top words updated after a parallel count", selectedTopWords(parallel, 8),
+                    parallel.getTopNWords(8).toString());
+        } finally {
+            pool.shutdown();
+        }
+
+        // TextAnalyzer's counter keeps answering top words after each analysis
+        File file = writeFile("top-words.txt", randomText(new Random(1), 120000, PIECES).getBytes(UTF_8));
+        WordCounter reference = new WordCounter();
+        reference.processText(new TextReader(file.getPath(), UTF_8).readAndNormalize());
+        TextAnalyzer analyzer = new TextAnalyzer(file.getPath(), UTF_8);
+        analyzer.analyze();
+        assertEqual("TextAnalyzer top words", reference.getTopNWords(10).toString(),
+                analyzer.getTopNWords(10).toString());
+        analyzer.analyzeMapped();
+        assertEqual("TextAnalyzer top words after analyzeMapped", reference.getTopNWords(10).toString(),
+                analyzer.getTopNWords(10).toString());
+
+        System.out.println();
+    }
+
+    private static void runCorpusAnalyzerTests() throws IOException {
+        System.out.println("--- Corpus Analyzer Tests ---");
+
+        // Paths that flattened to the same report name before the tree was mirrored
+        File root = new File(tempDirectory, "corpus");
+        String[] names = {"a/b.txt", "a_b.txt", "a/b/c.txt", "a_b_c.txt"};
+        String[] texts = new String[names.length];
+        Random random = new Random(8);
+        WordCounter expected = new WordCounter();
+        for (int i = 0; i < names.length; i++) {
+            texts[i] = randomText(random, 2000, PIECES);
+            File file = new File(root, names[i]);
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), texts[i].getBytes(UTF_8));
+            WordCounter document = new WordCounter();
+            document.processRawText(texts[i]);
+            expected.merge(document);
+        }
+
+        CorpusAnalyzer corpus = new CorpusAnalyzer(root.getPath(), 3);
+        corpus.setCharset(UTF_8);
+        corpus.analyze();
+        assertEqual("Every file is a document", names.length, corpus.getDocumentPaths().size());
+        assertSameCounts("Corpus counts are the merged document counts", expected, corpus.getWordCounter());
+        assertEqual("Document frequency of a common word", names.length, corpus.getDocumentFrequency("hello"));
+        assertEqual("Document frequency of a missing word", 0, corpus.getDocumentFrequency("zzzznotaword"));
+
+        File reports = new File(tempDirectory, "corpus-reports");
+        corpus.exportDocumentReports(reports.getPath());
+        boolean ownReports = true;
+        for (int i = 0; i < names.length; i++) {
+            File source = new File(root, names[i]);
+            File report = new File(reports, names[i] + ".report.txt");
+            ownReports &= report.isFile() && new String(Files.readAllBytes(report.toPath()), UTF_8)
+                    .equals(corpus.getDocumentReport(source.getPath()).generateReport());
+        }
+        assertTrue("Each document has its own report in the mirrored tree", ownReports);
+
+        System.out.println();
+    }
+
+    private static void runWordIndexFileTests() throws IOException {
+        System.out.println("--- Word Index File Tests ---");
+
+        WordCounter counter = new WordCounter();
+        counter.processRawText(randomText(new Random(4), 20000, PIECES) + " "
+                + randomWords(new Random(5), 3000));
+        File file = new File(tempDirectory, "words.idx");
+        WordIndexFile.write(counter, file.getPath());
+        WordIndexFile index = WordIndexFile.open(file.getPath());
+
+        assertEqual("Total word count", counter.getTotalWordCount(), index.getTotalWordCount());
+        assertEqual("Unique word count", counter.getUniqueWordCount(), index.getUniqueWordCount());
+        assertEqual("Longest word", counter.getLongestWord(), index.getLongestWord());
+        assertEqual("Most frequent word", counter.getMostFrequentWord(), index.getMostFrequentWord());
+        assertEqual("Average word length", counter.getAverageWordLength(), index.getAverageWordLength());
+        assertTrue("Word length counts", Arrays.equals(counter.getWordLengthCounts(), index.getWordLengthCounts()));
+
+        boolean allCounts = true;
+        for (Map.Entry<String, Integer> entry : counter.getWordFrequency().entrySet()) {
+            allCounts &= index.getWordCount(entry.getKey()) == entry.getValue().intValue();
+        }
+        assertTrue("Every word count reads back", allCounts);
+        assertEqual("Missing word", 0, index.getWordCount("zzzznotaword"));
+        assertEqual("Top 25 words", counter.getTopNWords(25).toString(), index.getTopNWords(25).toString());
+        assertEqual("All words ranked", counter.getTopNWords(counter.getUniqueWordCount()).toString(),
+                index.getTopNWords(counter.getUniqueWordCount()).toString());
+        assertTrue("Corrupt data offset rejected", !opens(corruptCopy(file, 36, 0x7FFFFFF0)));
+        assertTrue("Truncated file rejected", !opens(corruptCopy(file, -1, 0)));
+        assertTrue("Empty counter round-trips", opens(emptyIndex()));
+
+        String[] prefixes = {"", "d", "pro", "qu", "ü", "zzz"};
+        for (int i = 0; i < prefixes.length; i++) {
+            assertEqual("Prefix '" + prefixes[i] + "'",
+                    counter.getWordCountsStartingWith(prefixes[i]).toString(),
+                    index.getWordCountsStartingWith(prefixes[i]).toString());
+        }
+
+        System.out.println();
+    }
+
+    private static void runUtf8TokenizerTests() throws IOException {
+        System.out.println("--- UTF-8 Byte Tokenizer Tests ---");
+
+        // The byte tokenizer gives the same words as tokenizing the decoded text,
+        // from heap and direct buffers alike
+        Random random = new Random(9);
+        boolean sameWords = true;
+        for (int trial = 0; trial < 300 && sameWords; trial++) {
+            String text = randomText(random, random.nextInt(40), PIECES);
+            byte[] bytes = text.getBytes(UTF_8);
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).flip();
+            List<String> expected = fusedWords(text);
+            sameWords = expected.equals(utf8Words(ByteBuffer.wrap(bytes))) && expected.equals(utf8Words(direct));
+        }
+        assertTrue("Same words as the char tokenizer, 300 random texts", sameWords);
+        byte[] malformed = {'a', 'b', 'c', (byte) 0xC3, ' ', 'd', 'e', 'f', (byte) 0xFF, 'g'};
+        assertEqual("Malformed bytes decode as U+FFFD", fusedWords(new String(malformed, UTF_8)).toString(),
+                utf8Words(ByteBuffer.wrap(malformed)).toString());
+
+        File file = writeFile("utf8.txt", randomText(new Random(1), 120000, PIECES).getBytes(UTF_8));
+        TextReader reader = new TextReader(file.getPath(), UTF_8);
+        WordCounter expected = new WordCounter();
+        expected.processText(reader.readAndNormalize());
+        WordCounter bytes = new WordCounter();
+        bytes.processUtf8Text(reader.readBytes());
+        assertSameCounts("processUtf8Text (byte tokenizer)", expected, bytes);
+
+        System.out.println();
+    }
+
+    private static List<String> utf8Words(ByteBuffer utf8) {
+        final List<String> words = new ArrayList<String>();
+        new TextTokenizer().tokenize(utf8, new TokenSink() {
+            public void acceptToken(char[] buffer, int offset, int length) {
+                words.add(new String(buffer, offset, length));
+            }
+        });
+        return words;
+    }
+
+    private static void runHyperLogLogTests() {
+        System.out.println("--- HyperLogLog Tests ---");
+
+        assertEqual("Alpha for 16 registers", 0.673, HyperLogLog.alpha(16));
+        assertEqual("Alpha for 32 registers", 0.697, HyperLogLog.alpha(32));
+        assertEqual("Alpha for 64 registers", 0.709, HyperLogLog.alpha(64));
+        assertEqual("Alpha for 128 registers", 0.7213 / (1 + 1.079 / 128), HyperLogLog.alpha(128));
+
+        // Within three standard errors of 50000 distinct hashes at every precision
+        int distinct = 50000;
+        for (int precision = 4; precision <= 14; precision += 2) {
+            HyperLogLog counter = new HyperLogLog(precision);
+            for (long i = 0; i < distinct; i++) {
+                counter.add(mix(i));
+            }
+            double error = Math.abs(counter.estimate() - distinct) / (double) distinct;
+            double standardError = 1.04 / Math.sqrt(1 << precision);
+            assertTrue("Estimate at precision " + precision + " (error " + Math.round(error * 1000) / 10.0 + "%)",
+                    error <= 3 * standardError);
+        }
+
+        System.out.println();
+    }
+
+    private static void runFrequencySketchTests() {
+        System.out.println("--- Frequency Sketch Tests ---");
+
+        // A skewed stream: key k is drawn with probability about proportional to 1 / (k + 1)
+        Random random = new Random(10);
+        int keys = 5000;
+        int total = 200000;
+        long[] stream = new long[total];
+        Map<Long, Integer> exact = new HashMap<Long, Integer>();
+        for (int i = 0; i < total; i++) {
+            stream[i] = (long) Math.floor(Math.pow(keys + 1, random.nextDouble())) - 1;
+            Integer count = exact.get(stream[i]);
+            exact.put(stream[i], count == null ? 1 : count + 1);
+        }
+
+        double epsilon = 0.001;
+        double delta = 0.01;
+        CountMinSketch sketch = new CountMinSketch(epsilon, delta);
+        for (int i = 0; i < total; i++) {
+            sketch.add(mix(stream[i]));
+        }
+        boolean neverBelow = true;
+        int withinBound = 0;
+        for (Map.Entry<Long, Integer> entry : exact.entrySet()) {
+            long estimate = sketch.estimate(mix(entry.getKey()));
+            neverBelow &= estimate >= entry.getValue();
+            if (estimate - entry.getValue() <= epsilon * total) {
+                withinBound++;
+            }
+        }
+        assertTrue("Count-Min estimate never below the true count", neverBelow);
+        assertTrue("Count-Min estimate within epsilon * N for a 1 - delta share of words",
+                withinBound >= (1 - delta) * exact.size());
+
+        // Every word counted more than N / capacity times is tracked, never undercounted
+        int capacity = 100;
+        SpaceSaving heavyHitters = new SpaceSaving(capacity);
+        for (int i = 0; i < total; i++) {
+            char[] word = Long.toString(stream[i]).toCharArray();
+            heavyHitters.add(word, 0, word.length, (int) mix(stream[i]));
+        }
+        boolean heavyTracked = true;
+        boolean heavyBounded = true;
+        for (Map.Entry<Long, Integer> entry : exact.entrySet()) {
+            if (entry.getValue() > total / capacity) {
+                int slot = heavyHitters.find(Long.toString(entry.getKey()), (int) mix(entry.getKey()));
+                heavyTracked &= slot >= 0;
+                heavyBounded &= slot >= 0 && heavyHitters.count(slot) >= entry.getValue()
+                        && heavyHitters.count(slot) - heavyHitters.error(slot) <= entry.getValue();
+            }
+        }
+        assertTrue("Space-Saving tracks every word above N / capacity", heavyTracked);
+        assertTrue("Space-Saving counts bound the true count", heavyBounded);
+
+        // Replacing a word backward-shifts the rest of its probe run; the moved words are still found.
+        // Capacity 4 gives 8 slots, so hashes 8 and 6 probe from slots 0 and 6 (wrapping around).
+        int[] homes = {8, 6};
+        for (int h = 0; h < homes.length; h++) {
+            SpaceSaving shifted = new SpaceSaving(4);
+            String[] run = {"aaa", "bbb", "ccc", "ddd"};
+            for (int i = 0; i < run.length; i++) {
+                for (int repeat = 0; repeat <= i; repeat++) {
+                    shifted.add(run[i].toCharArray(), 0, 3, homes[h]);
+                }
+            }
+            // "aaa" has the lowest count and sits at the start of the run; "eee" goes
+            // elsewhere, so only the backward shift closes the hole "aaa" leaves
+            shifted.add("eee".toCharArray(), 0, 3, homes[h] + 4);
+            boolean allFound = shifted.find("aaa", homes[h]) < 0;
+            for (int i = 1; i < run.length; i++) {
+                int entry = shifted.find(run[i], homes[h]);
+                allFound &= entry >= 0 && shifted.count(entry) == i + 1;
+            }
+            int replaced = shifted.find("eee", homes[h] + 4);
+            allFound &= replaced >= 0 && shifted.count(replaced) == 2 && shifted.error(replaced) == 1;
+            assertTrue("Probe run starting at slot " + (homes[h] & 7) + " found after a replacement", allFound);
+        }
+
+        // getWordCount takes the smaller of the two overestimates
+        String text = randomText(new Random(11), 5000, PIECES);
+        WordCounter reference = new WordCounter();
+        reference.processRawText(text);
+        // A tiny sketch overcounts, but every word fits in Space-Saving
+        ApproximateWordCounter smallSketch = new ApproximateWordCounter(0.5, 0.5, 1000, 10);
+        smallSketch.processRawText(text);
+        // One Space-Saving slot overcounts its word, but the sketch is wide
+        ApproximateWordCounter oneSlot = new ApproximateWordCounter(0.00001, 0.01, 1, 10);
+        oneSlot.processRawText(text);
+        boolean smallSketchExact = true;
+        boolean oneSlotExact = true;
+        for (Map.Entry<String, Integer> entry : reference.getWordFrequency().entrySet()) {
+            smallSketchExact &= smallSketch.getWordCount(entry.getKey()) == entry.getValue();
+            oneSlotExact &= oneSlot.getWordCount(entry.getKey()) == entry.getValue();
+        }
+        assertTrue("Space-Saving count wins over a tiny sketch", smallSketchExact);
+        assertTrue("Sketch count wins over an overcounted Space-Saving slot", oneSlotExact);
+
+        System.out.println();
+    }
+
+    private static void runCustomFilterTests() throws IOException {
+        System.out.println("--- Custom Stop Word Filter Tests ---");
+
+        File file = writeFile("custom-filter.txt", randomText(new Random(1), 120000, PIECES).getBytes(UTF_8));
+
+        // A custom filter must apply to every chunk's partial counter
+        StopWordFilter custom = new StopWordFilter(Arrays.asList("processing", "data"), 2);
+        WordCounter customSingle = new WordCounter(custom);
+        new MappedTextReader(file.getPath(), Integer.MAX_VALUE, 1).countWords(customSingle);
+        WordCounter customMulti = new WordCounter(custom);
+        new MappedTextReader(file.getPath(), 4096, 4).countWords(customMulti);
+        assertSameCounts("MappedTextReader, multiple chunks, custom filter", customSingle, customMulti);
+        assertEqual("Custom stop word not counted", 0, customMulti.getWordCount("data"));
+        assertTrue("Default stop word counted", customMulti.getWordCount("the") > 0);
+        assertTrue("Two-letter word counted", customMulti.getWordCount("of") > 0);
+
+        WordCounter customIncremental = new WordCounter(custom);
+        new MappedTextReader(file.getPath(), 4096, 4).countNewWords(customIncremental, 0);
+        assertSameCounts("Incremental count, custom filter", customSingle, customIncremental);
+
+        WordCounter customRaw = new WordCounter(custom);
+        customRaw.processRawText(new TextReader(file.getPath(), UTF_8).readFile());
+        assertSameCounts("processRawText, custom filter", customRaw, customSingle);
+
+        System.out.println();
+    }
+
+    private static void runNGramTests() throws IOException {
+        System.out.println("--- N-gram Tests ---");
+
+        String text = randomText(new Random(12), 30000, PIECES);
+        StopWordFilter filter = new WordCounter().getStopWordFilter();
+        List<String> words = countedWords(text, filter);
+        int half = text.indexOf(' ', text.length() / 2) + 1;
+        String firstHalf = text.substring(0, half);
+        String secondHalf = text.substring(half);
+
+        for (int n = 2; n <= 4; n++) {
+            // Against a plain count of the space-joined n-gram strings
+            Map<String, Integer> expected = naiveNGrams(words, n, new HashMap<String, Integer>());
+            WordCounter counter = new WordCounter();
+            counter.setNGramSize(n);
+            counter.processRawText(text);
+            assertEqual(n + "-grams: distinct count", expected.size(), counter.getUniqueNGramCount());
+            assertTrue(n + "-grams: every count", sameNGramCounts(expected, counter));
+            assertEqual(n + "-grams: top 10", rankedNGrams(expected, 10),
+                    counter.getTopNGrams(10).toString());
+
+            // Parallel counting falls back to one pass, so n-grams still span segments
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                WordCounter parallel = new WordCounter();
+                parallel.setNGramSize(n);
+                parallel.processRawTextParallel(text, pool);
+                assertTrue(n + "-grams: processRawTextParallel", sameNGramCounts(expected, parallel));
+            } finally {
+                pool.shutdown();
+            }
+            File file = writeFile("ngrams-" + n + ".txt", text.getBytes(UTF_8));
+            WordCounter mapped = new WordCounter();
+            mapped.setNGramSize(n);
+            new MappedTextReader(file.getPath(), 4096, 4).countWords(mapped);
+            assertTrue(n + "-grams: MappedTextReader, multiple chunks", sameNGramCounts(expected, mapped));
+
+            // Merged counters add up their own n-grams, and none spans the two texts
+            Map<String, Integer> halves = naiveNGrams(countedWords(firstHalf, filter), n,
+                    new HashMap<String, Integer>());
+            naiveNGrams(countedWords(secondHalf, filter), n, halves);
+            WordCounter merged = new WordCounter();
+            merged.setNGramSize(n);
+            for (String part : new String[] {firstHalf, secondHalf}) {
+                WordCounter partial = new WordCounter();
+                partial.setNGramSize(n);
+                partial.processRawText(part);
+                merged.merge(partial);
+            }
+            assertTrue(n + "-grams: merged halves", sameNGramCounts(halves, merged));
+        }
+
+        // A break between documents: no n-gram spans it
+        TextTokenizer tokenizer = new TextTokenizer();
+        WordCounter documents = new WordCounter();
+        documents.setNGramSize(2);
+        tokenizer.tokenize("alpha bravo", documents);
+        documents.breakNGrams();
+        tokenizer.tokenize("charlie delta", documents);
+        assertEqual("No bigram across the break", 0, documents.getNGramCount("bravo charlie"));
+        assertEqual("Bigram after the break", 1, documents.getNGramCount("charlie delta"));
+        tokenizer.tokenize("echo", documents);
+        assertEqual("Bigram across tokenize calls without a break", 1, documents.getNGramCount("delta echo"));
+
+        // More distinct words than 16-bit ids can hold
+        WordCounter tooMany = new WordCounter();
+        tooMany.setNGramSize(4);
+        boolean rejected = false;
+        try {
+            for (int i = 0; i <= 1 << 16; i++) {
+                char[] word = ("word" + i).toCharArray();
+                tooMany.acceptToken(word, 0, word.length);
+            }
+        } catch (IllegalStateException e) {
+            rejected = e.getMessage().startsWith("Vocabulary too large for 4-grams");
+        }
+        assertTrue("Vocabulary too large for 4-grams rejected", rejected);
+
+        System.out.println();
+    }
+
+    private static void runQueryServerTests() throws IOException {
+        System.out.println("--- Query Server Tests ---");
+
+        WordCounter counter = new WordCounter();
+        counter.processRawText("data data processing software data machine");
+        QueryServer server = new QueryServer(new AnalysisSnapshot(counter), 0, 2);
+        server.start();
+        try {
+            String base = "http://localhost:" + server.getPort();
+            assertEqual("GET /count", 200, status(base + "/count?word=Data", "GET"));
+            assertEqual("Count body", "data\t3\n", body(base + "/count?word=Data"));
+            assertEqual("Top body", "data\t3\nmachine\t1\n", body(base + "/top?n=2"));
+            assertEqual("Missing parameter", 400, status(base + "/count", "GET"));
+            assertEqual("Negative n", 400, status(base + "/top?n=-1", "GET"));
+            assertEqual("Non-numeric n", 400, status(base + "/top?n=ten", "GET"));
+            assertEqual("POST is rejected", 405, status(base + "/top", "POST"));
+            assertEqual("DELETE is rejected", 405, status(base + "/prefix?prefix=d", "DELETE"));
+            assertTrue("Metrics list the endpoints", body(base + "/metrics").contains("/count"));
+        } finally {
+            server.stop(0);
+        }
+
+        // The snapshot keeps only the most frequent n-grams
+        WordCounter nGrams = new WordCounter();
+        nGrams.setNGramSize(2);
+        nGrams.processRawText(randomWords(new Random(13), 5000));
+        AnalysisSnapshot snapshot = new AnalysisSnapshot(nGrams);
+        assertTrue("More n-grams counted than the snapshot keeps", nGrams.getUniqueNGramCount() > 1000);
+        assertEqual("Snapshot keeps the top 1000 n-grams", 1000, snapshot.getTopNGrams(5000).size());
+        assertEqual("Snapshot top n-grams", nGrams.getTopNGrams(10).toString(),
+                snapshot.getTopNGrams(10).toString());
+
+        // An unusable port is reported like any other bad argument
+        String[] ports = {"eighty", "-1", "65536"};
+        for (int i = 0; i < ports.length; i++) {
+            String error = runMain("--serve", "sample_text.txt", ports[i]);
+            assertEqual("--serve " + ports[i] + " exits with status 1",
+                    "1 Error: Port must be a number from 0 to 65535: " + ports[i], error);
+        }
+
+        System.out.println();
+    }
+
+    private static void runWindowedCounterTests() throws IOException {
+        System.out.println("--- Windowed Counter Tests ---");
+
+        // A one-minute window in 10-second buckets
+        WindowedWordCounter window = new WindowedWordCounter(60000, 10000);
+        long start = 1700000000000L;
+        window.processText(start, "alpha beta");
+        window.processText(start + 25000, "alpha gamma");
+        assertEqual("Counts within the window", 2, window.getWordCount("alpha"));
+        assertEqual("Window end", start + 30000, window.getWindowEnd());
+
+        // Late, but still inside the window
+        window.processText(start + 5000, "beta");
+        assertEqual("Late words inside the window are counted", 2, window.getWordCount("beta"));
+
+        // Late and already outside the window once it has moved on
+        window.processText(start + 70000, "delta");
+        assertEqual("Oldest bucket expired", 1, window.getWordCount("alpha"));
+        assertEqual("Expired words leave the window", 0, window.getWordCount("beta"));
+        window.processText(start + 1000, "epsilon");
+        assertEqual("Words older than the window are dropped", 0, window.getWordCount("epsilon"));
+        assertEqual("Dropped word count", 1, window.getDroppedWordCount());
+
+        window.advanceTo(start + 200000);
+        assertEqual("Every bucket expires", 0, window.getTotalWordCount());
+        assertEqual("No unique words left", 0, window.getUniqueWordCount());
+        assertTrue("Empty top words", window.getTopNWords(5).isEmpty());
+
+        // Log lines, with continuation lines counted at the previous timestamp
+        WindowedWordCounter log = new WindowedWordCounter(60000, 10000);
+        log.processLine("continuation before any timestamp");
+        log.processLine("2024-05-01T12:00:00Z server started");
+        log.processLine("    stack frame server");
+        log.processLine("2024-05-01 12:00:30 server ready");
+        assertEqual("Words before the first timestamp are dropped", 0, log.getWordCount("continuation"));
+        assertEqual("Continuation lines use the previous timestamp", 3, log.getWordCount("server"));
+        assertEqual("ISO and space-separated timestamps", 1, log.getWordCount("ready"));
+
+        // Short numbers at the start of a message are not epoch seconds
+        WindowedWordCounter numbers = new WindowedWordCounter(60000, 10000);
+        numbers.processLine("1700000000 request started");
+        numbers.processLine("404 not found");
+        numbers.processLine("3 retries left");
+        numbers.processLine("1700000005000 request finished");
+        assertEqual("Epoch seconds", 1700000000000L, WindowedWordCounter.parseTimestamp("1700000000"));
+        assertEqual("Epoch milliseconds", 1700000005000L, WindowedWordCounter.parseTimestamp("1700000005000"));
+        assertEqual("Status code is not a timestamp", Long.MIN_VALUE, WindowedWordCounter.parseTimestamp("404"));
+        assertEqual("Twelve digits are not a timestamp", Long.MIN_VALUE,
+                WindowedWordCounter.parseTimestamp("170000000000"));
+        assertEqual("Number-led lines keep the previous timestamp", 1, numbers.getWordCount("found"));
+        assertEqual("Following lines are not dropped", 1, numbers.getWordCount("retries"));
+        assertEqual("Nothing dropped", 0, numbers.getDroppedWordCount());
+        assertEqual("Window follows the real timestamps", 1700000010000L, numbers.getWindowEnd());
+
+        // --window arguments that are not positive numbers are reported, not thrown
+        File logFile = writeFile("window.log", "2024-05-01T12:00:00Z server started\n".getBytes(UTF_8));
+        assertEqual("--window with a valid log", "0 null", runMain("--window", "5", logFile.getPath(), "3"));
+        String[][] badArguments = {
+            {"0", "10", "Window minutes must be a number from 1 to 2147483647: 0"},
+            {"ten", "10", "Window minutes must be a number from 1 to 2147483647: ten"},
+            {"5", "0", "Word count must be a number from 1 to 2147483647: 0"},
+            {"5", "x", "Word count must be a number from 1 to 2147483647: x"}
+        };
+        for (int i = 0; i < badArguments.length; i++) {
+            assertEqual("--window " + badArguments[i][0] + " ... " + badArguments[i][1] + " exits with status 1",
+                    "1 Error: " + badArguments[i][2],
+                    runMain("--window", badArguments[i][0], logFile.getPath(), badArguments[i][1]));
+        }
+
+        System.out.println();
+    }
+
+    private static void runInvertedIndexTests() throws IOException {
+        System.out.println("--- Inverted Index Tests ---");
+
+        // More documents than one skip block holds, over a small vocabulary
+        Random random = new Random(6);
+        String[] vocabulary = {"alpha", "beta", "gamma", "delta", "epsilon", "zeta", "theta", "omega"};
+        InvertedIndexBuilder builder = new InvertedIndexBuilder();
+        List<List<String>> documents = new ArrayList<List<String>>();
+        for (int d = 0; d < 300; d++) {
+            StringBuilder text = new StringBuilder();
+            List<String> words = new ArrayList<String>();
+            int length = 1 + random.nextInt(40);
+            for (int i = 0; i < length; i++) {
+                // Stop words take no positions
+                if (random.nextInt(5) == 0) {
+                    text.append("the ");
+                }
+                String word = vocabulary[random.nextInt(d < 150 ? vocabulary.length : 4)];
+                text.append(i % 7 == 0 ? word.toUpperCase() : word).append(i % 3 == 0 ? ", " : " ");
+                words.add(word);
+            }
+            builder.addDocument("doc" + d, text.toString());
+            documents.add(words);
+        }
+        File file = new File(tempDirectory, "docs.iidx");
+        InvertedIndexFile.write(builder, file.getPath());
+        InvertedIndexFile index = InvertedIndexFile.open(file.getPath());
+
+        assertEqual("Document count", documents.size(), index.getDocumentCount());
+        assertEqual("Document length", documents.get(17).size(), index.getDocumentLength(17));
+        boolean frequencies = true;
+        boolean positions = true;
+        for (int i = 0; i < vocabulary.length; i++) {
+            Map<String, int[]> expected = phraseMatches(documents, vocabulary[i]);
+            frequencies &= index.getDocumentFrequency(vocabulary[i]) == expected.size();
+            positions &= sameMatches(expected, index.getPositions(vocabulary[i]));
+        }
+        assertTrue("Document frequencies", frequencies);
+        assertTrue("Positions of every word", positions);
+
+        String[] queries = {"alpha beta", "epsilon zeta", "theta omega alpha", "beta", "alpha unknown"};
+        for (int i = 0; i < queries.length; i++) {
+            List<String> expected = new ArrayList<String>();
+            for (int d = 0; d < documents.size(); d++) {
+                if (documents.get(d).containsAll(Arrays.asList(queries[i].split(" ")))) {
+                    expected.add("doc" + d);
+                }
+            }
+            assertEqual("AND query '" + queries[i] + "'", expected.toString(),
+                    index.getDocumentsContainingAll(queries[i]).toString());
+        }
+
+        String[] phrases = {"alpha beta", "gamma delta alpha", "the alpha beta", "omega alpha", "beta beta"};
+        for (int i = 0; i < phrases.length; i++) {
+            Map<String, int[]> expected = phraseMatches(documents, phrases[i].replace("the ", ""));
+            Map<String, int[]> actual = index.getPhraseMatches(phrases[i]);
+            assertTrue("Phrase '" + phrases[i] + "' (" + expected.size() + " documents)",
+                    sameMatches(expected, actual));
+        }
+        boolean pastFirstBlock = false;
+        for (String document : index.getPhraseMatches("alpha beta").keySet()) {
+            pastFirstBlock |= Integer.parseInt(document.substring(3)) >= 128;
+        }
+        assertTrue("Phrases match beyond the first skip block", pastFirstBlock);
+
+        // Header offsets and counts that do not fit the file are rejected when it is opened
+        int[] headerFields = {12, 16, 28, 32, 36};
+        String[] fieldNames = {"document count", "term count", "stop word offset", "document table offset",
+            "term table offset"};
+        for (int i = 0; i < headerFields.length; i++) {
+            assertTrue("Corrupt " + fieldNames[i] + " rejected",
+                    !opensInvertedIndex(corruptCopy(file, headerFields[i], 0x7FFFFFF0)));
+        }
+        assertTrue("Truncated inverted index rejected", !opensInvertedIndex(corruptCopy(file, -1, 0)));
+        File empty = new File(tempDirectory, "empty.iidx");
+        InvertedIndexFile.write(new InvertedIndexBuilder(), empty.getPath());
+        assertTrue("Empty inverted index opens", opensInvertedIndex(empty));
+
+        System.out.println();
+    }
+
+    private static void runStreamingDecodingTests() throws IOException {
+        System.out.println("--- Streaming Decoding Tests ---");
+
+        String text = randomText(new Random(2), 5000, PIECES);
+        WordCounter expected = new WordCounter();
+        expected.processText(new TextReader("").normalizeText(text));
+
+        String[] charsets = {"UTF-8", "UTF-16LE", "UTF-16BE", "UTF-32BE"};
+        for (int i = 0; i < charsets.length; i++) {
+            Charset charset = Charset.forName(charsets[i]);
+            // Written with a byte order mark and read as Latin-1: the mark must win
+            File file = writeFile("bom-" + charsets[i] + ".txt", withByteOrderMark(text, charset));
+            TextReader reader = new TextReader(file.getPath(), Charset.forName("ISO-8859-1"));
+            assertEqual("Byte order mark detected as " + charsets[i], charsets[i], reader.detectCharset().name());
+            int[] chunkSizes = {16, 31, 4096};
+            for (int j = 0; j < chunkSizes.length; j++) {
+                reader.setChunkSize(chunkSizes[j]);
+                WordCounter streamed = new WordCounter();
+                streamed.processReader(reader);
+                assertSameCounts(charsets[i] + " with BOM, " + chunkSizes[j] + "-byte chunks", expected, streamed);
+            }
+            WordCounter whole = new WordCounter();
+            whole.processRawText(reader.readFile());
+            assertSameCounts(charsets[i] + " with BOM, readFile", expected, whole);
+        }
+
+        String latin = randomText(new Random(3), 5000, new String[] {"Café", "naïve", "ÉTÉ", "data", "the", "Façade"});
+        File latinFile = writeFile("latin1.txt", latin.getBytes(Charset.forName("ISO-8859-1")));
+        WordCounter latinExpected = new WordCounter();
+        latinExpected.processText(new TextReader("").normalizeText(latin));
+        TextReader latinReader = new TextReader(latinFile.getPath(), Charset.forName("ISO-8859-1"));
+        latinReader.setChunkSize(16);
+        WordCounter latinStreamed = new WordCounter();
+        latinStreamed.processReader(latinReader);
+        assertSameCounts("ISO-8859-1, 16-byte chunks", latinExpected, latinStreamed);
+
+        // A large file through a 17-byte buffer, so most chunks end inside a word
+        File file = writeFile("streamed.txt", randomText(new Random(1), 120000, PIECES).getBytes(UTF_8));
+        TextReader fileReader = new TextReader(file.getPath(), UTF_8);
+        WordCounter fileExpected = new WordCounter();
+        fileExpected.processText(fileReader.readAndNormalize());
+        fileReader.setChunkSize(17);
+        WordCounter fileStreamed = new WordCounter();
+        fileStreamed.processReader(fileReader);
+        assertSameCounts("TextReader.tokenize, 17-byte chunks", fileExpected, fileStreamed);
+
+        // Malformed UTF-8: replaced like the byte tokenizer does, or reported with its offset
+        byte[] prefix = "good words été here ".getBytes(UTF_8);
+        byte[] malformed = Arrays.copyOf(prefix, prefix.length + 5);
+        malformed[prefix.length] = (byte) 0xC3;
+        malformed[prefix.length + 1] = 'x';
+        malformed[prefix.length + 2] = ' ';
+        malformed[prefix.length + 3] = (byte) 0xFF;
+        malformed[prefix.length + 4] = 'z';
+        File malformedFile = writeFile("malformed.txt", malformed);
+        WordCounter replacedBytes = new WordCounter();
+        replacedBytes.processUtf8Text(new TextReader(malformedFile.getPath(), UTF_8).readBytes());
+        TextReader replacing = new TextReader(malformedFile.getPath(), UTF_8);
+        replacing.setChunkSize(16);
+        WordCounter replacedStream = new WordCounter();
+        replacedStream.processReader(replacing);
+        assertSameCounts("Malformed input replaced", replacedBytes, replacedStream);
+        String message = null;
+        try {
+            new WordCounter().processReader(
+                    new TextReader(malformedFile.getPath(), UTF_8, CodingErrorAction.REPORT));
+        } catch (IOException e) {
+            message = e.getMessage();
+        }
+        assertTrue("Malformed input reported", message != null);
+        assertTrue("Report names the byte offset",
+                message != null && message.contains("at byte " + prefix.length + " "));
+
+        System.out.println();
+    }
+
+    /**
+     * The counter's top k words as TopWords.select ranks them over its whole table.
+     */
+    private static String selectedTopWords(WordCounter counter, int k) {
+        WordTable table = counter.getWordTable();
+        int[] ids = TopWords.select(table, k);
+        StringBuilder words = new StringBuilder("[");
+        for (int i = 0; i < ids.length; i++) {
+            words.append(i == 0 ? "" : ", ").append(table.word(ids[i])).append('=').append(table.count(ids[i]));
+        }
+        return words.append(']').toString();
+    }
+
+    /**
+     * Size in bytes of the largest chunk the reader splits the file into.
+     */
+    private static long largestChunk(MappedTextReader reader, File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            List<long[]> chunks = reader.findChunks(channel, 0, channel.size());
+            long largest = 0;
+            for (int i = 0; i < chunks.size(); i++) {
+                largest = Math.max(largest, chunks.get(i)[1] - chunks.get(i)[0]);
+            }
+            return largest;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Distinct-looking lowercase words, so the index holds many terms.
+     */
+    private static String randomWords(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            int length = 3 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+            text.append(' ');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Copies an index file with the int at the offset replaced, or with its
+     * last byte cut off when the offset is negative.
+     */
+    private static File corruptCopy(File file, int offset, int value) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        if (offset < 0) {
+            bytes = Arrays.copyOf(bytes, bytes.length - 1);
+        } else {
+            ByteBuffer.wrap(bytes).putInt(offset, value);
+        }
+        return writeFile("corrupt-" + offset + ".idx", bytes);
+    }
+
+    private static File emptyIndex() throws IOException {
+        File file = new File(tempDirectory, "empty.idx");
+        WordIndexFile.write(new WordCounter(), file.getPath());
+        return file;
+    }
+
+    private static boolean opens(File file) {
+        try {
+            WordIndexFile.open(file.getPath());
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * SplitMix64 finalizer, for well-spread test hashes.
+     */
+    private static long mix(long value) {
+        long z = value * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The words a counter with the given filter counts, in text order.
+     */
+    private static List<String> countedWords(String text, StopWordFilter filter) {
+        List<String> words = new ArrayList<String>();
+        for (String word : fusedWords(text)) {
+            if (filter.accepts(word)) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Adds the n-grams of the words, joined by single spaces, to the counts.
+     */
+    private static Map<String, Integer> naiveNGrams(List<String> words, int n, Map<String, Integer> counts) {
+        for (int i = 0; i + n <= words.size(); i++) {
+            StringBuilder nGram = new StringBuilder(words.get(i));
+            for (int j = 1; j < n; j++) {
+                nGram.append(' ').append(words.get(i + j));
+            }
+            Integer count = counts.get(nGram.toString());
+            counts.put(nGram.toString(), count == null ? 1 : count + 1);
+        }
+        return counts;
+    }
+
+    private static boolean sameNGramCounts(Map<String, Integer> expected, WordCounter counter) {
+        if (expected.size() != counter.getUniqueNGramCount()) {
+            return false;
+        }
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            if (counter.getNGramCount(entry.getKey()) != entry.getValue().intValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The k most frequent n-grams, by count descending and then word by word.
+     */
+    private static String rankedNGrams(Map<String, Integer> counts, int k) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<Map.Entry<String, Integer>>(counts.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Integer>>() {
+            public int compare(Map.Entry<String, Integer> a, Map.Entry<String, Integer> b) {
+                if (!a.getValue().equals(b.getValue())) {
+                    return b.getValue() - a.getValue();
+                }
+                String[] wordsA = a.getKey().split(" ");
+                String[] wordsB = b.getKey().split(" ");
+                for (int i = 0; i < wordsA.length; i++) {
+                    int order = wordsA[i].compareTo(wordsB[i]);
+                    if (order != 0) {
+                        return order;
+                    }
+                }
+                return 0;
+            }
+        });
+        return entries.subList(0, Math.min(k, entries.size())).toString();
+    }
+
+    /**
+     * Runs TextAnalyzer.main in a new JVM and returns its exit status and the
+     * first line it printed to standard error, separated by a space.
+     */
+    private static String runMain(String... args) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("TextAnalyzer");
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).directory(tempDirectory).start();
+        process.getOutputStream().close();
+        process.getInputStream().close();
+        BufferedReader errors = new BufferedReader(new InputStreamReader(process.getErrorStream(), UTF_8));
+        try {
+            String firstLine = errors.readLine();
+            return process.waitFor() + " " + firstLine;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running TextAnalyzer", e);
+        } finally {
+            errors.close();
+        }
+    }
+
+    private static int status(String url, String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setRequestMethod(method);
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String body(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            InputStream in = connection.getInputStream();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
+            StringBuilder text = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                text.append(line).append('\n');
+            }
+            reader.close();
+            return text.toString();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Start positions of the phrase in each document of the model, by brute force.
+     */
+    private static Map<String, int[]> phraseMatches(List<List<String>> documents, String phrase) {
+        String[] words = phrase.split(" ");
+        Map<String, int[]> matches = new LinkedHashMap<String, int[]>();
+        for (int d = 0; d < documents.size(); d++) {
+            List<String> document = documents.get(d);
+            List<Integer> starts = new ArrayList<Integer>();
+            for (int p = 0; p + words.length <= document.size(); p++) {
+                boolean matched = true;
+                for (int i = 0; i < words.length && matched; i++) {
+                    matched = document.get(p + i).equals(words[i]);
+                }
+                if (matched) {
+                    starts.add(p);
+                }
+            }
+            if (!starts.isEmpty()) {
+                int[] positions = new int[starts.size()];
+                for (int i = 0; i < positions.length; i++) {
+                    positions[i] = starts.get(i);
+                }
+                matches.put("doc" + d, positions);
+            }
+        }
+        return matches;
+    }
+
+    private static boolean opensInvertedIndex(File file) {
+        try {
+            InvertedIndexFile.open(file.getPath());
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean sameMatches(Map<String, int[]> expected, Map<String, int[]> actual) {
+        if (!expected.keySet().toString().equals(actual.keySet().toString())) {
+            return false;
+        }
+        for (Map.Entry<String, int[]> entry : expected.entrySet()) {
+            if (!Arrays.equals(entry.getValue(), actual.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] withByteOrderMark(String text, Charset charset) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] mark = "\uFEFF".getBytes(charset);
+        byte[] body = text.getBytes(charset);
+        bytes.write(mark, 0, mark.length);
+        bytes.write(body, 0, body.length);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Words of the original pipeline: normalizeText, then a split on spaces.
+     */
+    private static List<String> normalizedWords(String text) {
+        String normalized = new TextReader("").normalizeText(text);
+        List<String> words = new ArrayList<String>();
+        if (!normalized.isEmpty()) {
+            words.addAll(Arrays.asList(normalized.split(" ")));
+        }
+        return words;
+    }
+
+    private static List<String> fusedWords(String text) {
+        final List<String> words = new ArrayList<String>();
+        new TextTokenizer().tokenize(text, new TokenSink() {
+            public void acceptToken(char[] buffer, int offset, int length) {
+                words.add(new String(buffer, offset, length));
+            }
+        });
+        return words;
+    }
+
+    /**
+     * Joins random pieces with random separators.
+     */
+    private static String randomText(Random random, int pieces, String[] words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < pieces; i++) {
+            text.append(words[random.nextInt(words.length)]);
+            text.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static File writeFile(String name, byte[] content) throws IOException {
+        File file = new File(tempDirectory, name);
+        OutputStream out = Files.newOutputStream(file.toPath());
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (int i = 0; i < children.length; i++) {
+                deleteRecursively(children[i]);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Compares every statistic two counters report.
+     */
+    private static void assertSameCounts(String testName, WordCounter expected, WordCounter actual) {
+        String difference = null;
+        if (!expected.getWordFrequency().equals(actual.getWordFrequency())) {
+            difference = "word frequencies differ (" + expected.getUniqueWordCount() + " vs "
+                    + actual.getUniqueWordCount() + " unique)";
+        } else if (expected.getTotalWordCount() != actual.getTotalWordCount()) {
+            difference = "total " + expected.getTotalWordCount() + " vs " + actual.getTotalWordCount();
+        } else if (!expected.getLongestWord().equals(actual.getLongestWord())) {
+            difference = "longest word " + expected.getLongestWord() + " vs " + actual.getLongestWord();
+        } else if (!expected.getMostFrequentWord().equals(actual.getMostFrequentWord())) {
+            difference = "most frequent " + expected.getMostFrequentWord() + " vs " + actual.getMostFrequentWord();
+        } else if (!Arrays.equals(expected.getWordLengthCounts(), actual.getWordLengthCounts())) {
+            difference = "word length counts differ";
+        }
+        if (difference == null) {
+            System.out.printf("  [PASS] %s%n", testName);
+            passed++;
+        } else {
+            System.out.printf("  [FAIL] %s - %s%n", testName, difference);
+            failed++;
+        }
+    }
+
+    private static void assertEqual(String testName, double expected, double actual) {
+        if (Math.abs(expected - actual) < 1e-9) {
+            System.out.printf("  [PASS] %s%n", testName);
+            passed++;
+        } else {
+            System.out.printf("  [FAIL] %s - Expected: %f, Got: %f%n", testName, expected, actual);
+            failed++;
+        }
+    }
+
+    private static void assertEqual(String testName, long expected, long actual) {
+        if (expected == actual) {
+            System.out.printf("  [PASS] %s%n", testName);
+            passed++;
+        } else {
+            System.out.printf("  [FAIL] %s - Expected: %d, Got: %d%n", testName, expected, actual);
+            failed++;
+        }
+    }
+
+    private static void assertEqual(String testName, String expected, String actual) {
+        if (expected.equals(actual)) {
+            System.out.printf("  [PASS] %s%n", testName);
+            passed++;
+        } else {
+            System.out.printf("  [FAIL] %s - Expected: %s, Got: %s%n", testName, expected, actual);
+            failed++;
+        }
+    }
+
+    private static void assertTrue(String testName, boolean condition) {
+        if (condition) {
+            System.out.printf("  [PASS] %s%n", testName);
+            passed++;
+        } else {
+            System.out.printf("  [FAIL] %s - Condition was false%n", testName);
+            failed++;
+        }
+    }
+}